@@ -0,0 +1,93 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction and construction plus solving of the boards in MineSweeperTests.DATA, the cost of solving
+ * is the difference of the two. A solver can only be solved once, and building a fresh one per invocation
+ * in a Level.Invocation fixture would both add its allocations to the gc profile of solve and distort
+ * the timing of the boards solved in microseconds.
+ * Run with the jmh profile, the allocation rate comes from the gc profiler (-prof gc, default of jmh.args).
+ * JMH refuses benchmarks in the default package, where the solver lives, so the solver and the fixtures
+ * are reached through method handles.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MineSweeperBenchmark {
+    private static final MethodHandle NEW_MINE_SWEEPER;
+    private static final MethodHandle SOLVE;
+    private static final MethodHandle NEW_GAME;
+    private static final MethodHandle GET_MINES;
+    private static final String[][] FIXTURES;
+    // number of values of Board.board, a board added to or removed from DATA must be added there as well
+    private static final int BOARD_COUNT = 29;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> mineSweeper = Class.forName("MineSweeper");
+            Constructor<?> constructor = mineSweeper.getDeclaredConstructor(String.class, int.class, Class.forName("MineOracle"));
+            constructor.setAccessible(true);
+            NEW_MINE_SWEEPER = lookup.unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(Object.class, String.class, int.class, Object.class));
+            Method solve = mineSweeper.getDeclaredMethod("solve");
+            solve.setAccessible(true);
+            SOLVE = lookup.unreflect(solve).asType(MethodType.methodType(String.class, Object.class));
+            Class<?> game = Class.forName("Game");
+            NEW_GAME = lookup.unreflectConstructor(game.getConstructor(String.class))
+                    .asType(MethodType.methodType(Object.class, String.class));
+            GET_MINES = lookup.unreflect(game.getMethod("getMinesN"))
+                    .asType(MethodType.methodType(int.class, Object.class));
+            Class<?> tests = Class.forName("MineSweeperTests");
+            Field data = tests.getDeclaredField("DATA");
+            data.setAccessible(true);
+            FIXTURES = (String[][]) data.get(tests.getConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        if (FIXTURES.length != BOARD_COUNT)
+            throw new ExceptionInInitializerError("MineSweeperTests.DATA has " + FIXTURES.length
+                    + " boards, the benchmark parameters cover " + BOARD_COUNT);
+    }
+
+    @State(Scope.Thread)
+    public static class Board {
+        // index into MineSweeperTests.DATA, 0 to BOARD_COUNT - 1
+        @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14",
+                "15", "16", "17", "18", "19", "20", "21", "22", "23", "24", "25", "26", "27", "28"})
+        public int board;
+        Object game;
+        String map;
+        int mines;
+
+        @Setup(Level.Trial)
+        public void load() throws Throwable {
+            String[] fixture = FIXTURES[board];
+            game = (Object) NEW_GAME.invokeExact(fixture[1]);
+            map = fixture[2];
+            mines = (int) GET_MINES.invokeExact(game);
+        }
+    }
+
+    @Benchmark
+    public Object construct(Board board) throws Throwable {
+        return (Object) NEW_MINE_SWEEPER.invokeExact(board.map, board.mines, board.game);
+    }
+
+    @Benchmark
+    public String constructAndSolve(Board board) throws Throwable {
+        Object mineSweeper = (Object) NEW_MINE_SWEEPER.invokeExact(board.map, board.mines, board.game);
+        return (String) SOLVE.invokeExact(mineSweeper);
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.SplittableRandom;
+
+/**
+ * Random boards for load tests, the same seed always gives the same board.
+ * The start cell and its neighbours never hold a mine, so opening it is like a first click:
+ * the connected zeros around it and their borders are revealed, plus every free cell within revealRadius.
+ */
+public class BoardGenerator {
+
+    /**
+     * A board with the start cell in the centre, as map for MineSweeper and with a game that knows all mines.
+     */
+    public static BoardSpec generate(String name, int rows, int cols, double density, int revealRadius, long seed) {
+        int startRow = rows / 2;
+        int startCol = cols / 2;
+        ParsedBoard map = generateMap(rows, cols, density, startRow, startCol, seed);
+        ParsedBoard revealed = revealAround(map, startRow, startCol, revealRadius);
+        return new BoardSpec(name, revealed.toString(), countMines(map), new Game(map, GameEventSink.SILENT));
+    }
+
+    /**
+     * @return the full map with round(density * cells) mines, less if they don't fit outside the start area
+     */
+    public static ParsedBoard generateMap(int rows, int cols, double density, int startRow, int startCol, long seed) {
+        if (rows <= 0 || cols <= 0)
+            throw new IllegalArgumentException("Board must have at least one row and col");
+        if (density < 0 || density > 1)
+            throw new IllegalArgumentException("Density must be between 0 and 1, was " + density);
+        int[] candidates = new int[rows * cols];
+        int candidateCount = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (Math.abs(row - startRow) > 1 || Math.abs(col - startCol) > 1)
+                    candidates[candidateCount++] = row * cols + col;
+            }
+        }
+        int mines = (int) Math.min(Math.round(density * rows * cols), candidateCount);
+        byte[] cells = new byte[rows * cols];
+        SplittableRandom random = new SplittableRandom(seed);
+        // partial Fisher-Yates shuffle, the first mines candidates get a mine
+        for (int i = 0; i < mines; i++) {
+            int j = i + random.nextInt(candidateCount - i);
+            int chosen = candidates[j];
+            candidates[j] = candidates[i];
+            cells[chosen] = BoardParser.MINE;
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (cells[row * cols + col] != BoardParser.MINE)
+                    cells[row * cols + col] = (byte) countMineNeighbours(cells, rows, cols, row, col);
+            }
+        }
+        return new ParsedBoard(rows, cols, cells);
+    }
+
+    /**
+     * @return the map with only the cells opened by clicking on the start cell and the free cells within radius known
+     */
+    public static ParsedBoard revealAround(ParsedBoard map, int startRow, int startCol, int radius) {
+        int rows = map.rows();
+        int cols = map.cols();
+        byte[] cells = new byte[rows * cols];
+        Arrays.fill(cells, BoardParser.UNKNOWN);
+        for (int row = Math.max(startRow - radius, 0); row <= Math.min(startRow + radius, rows - 1); row++) {
+            for (int col = Math.max(startCol - radius, 0); col <= Math.min(startCol + radius, cols - 1); col++) {
+                if (map.get(row, col) != BoardParser.MINE)
+                    cells[row * cols + col] = map.get(row, col);
+            }
+        }
+        // flood fill from the start cell, spreading over zeros
+        boolean[] visited = new boolean[rows * cols];
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(startRow * cols + startCol);
+        visited[startRow * cols + startCol] = true;
+        while (!queue.isEmpty()) {
+            int index = queue.poll();
+            cells[index] = map.cells()[index];
+            if (cells[index] != 0)
+                continue;
+            int row = index / cols;
+            int col = index % cols;
+            for (int i = Math.max(row - 1, 0); i <= Math.min(row + 1, rows - 1); i++) {
+                for (int j = Math.max(col - 1, 0); j <= Math.min(col + 1, cols - 1); j++) {
+                    int neighbour = i * cols + j;
+                    if (!visited[neighbour]) {
+                        visited[neighbour] = true;
+                        queue.add(neighbour);
+                    }
+                }
+            }
+        }
+        return new ParsedBoard(rows, cols, cells);
+    }
+
+    public static int countMines(ParsedBoard map) {
+        int mines = 0;
+        for (byte cell : map.cells()) {
+            if (cell == BoardParser.MINE) mines++;
+        }
+        return mines;
+    }
+
+    private static int countMineNeighbours(byte[] cells, int rows, int cols, int row, int col) {
+        int mines = 0;
+        for (int i = Math.max(row - 1, 0); i <= Math.min(row + 1, rows - 1); i++) {
+            for (int j = Math.max(col - 1, 0); j <= Math.min(col + 1, cols - 1); j++) {
+                if (cells[i * cols + j] == BoardParser.MINE) mines++;
+            }
+        }
+        return mines;
+    }
+}
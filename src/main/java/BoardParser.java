@@ -0,0 +1,158 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a map ("0".."8", "x" and "?" separated by spaces, one row per line) in a single pass
+ * into a byte per cell, without creating a String for every cell.
+ */
+public class BoardParser {
+    public static final byte UNKNOWN = -1;
+    public static final byte MINE = -2;
+    // largest region FileChannel.map can map at once
+    private static final long MAX_MAPPING = Integer.MAX_VALUE;
+
+    public static ParsedBoard parse(CharSequence map) {
+        Builder builder = new Builder();
+        for (int i = 0; i < map.length(); i++)
+            builder.accept(map.charAt(i));
+        return builder.build();
+    }
+
+    public static ParsedBoard parse(Reader reader) {
+        Builder builder = new Builder();
+        char[] buffer = new char[8192];
+        try {
+            for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+                for (int i = 0; i < read; i++)
+                    builder.accept(buffer[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads an ASCII map between position and limit of the buffer, without moving its position.
+     */
+    public static ParsedBoard parse(ByteBuffer map) {
+        Builder builder = new Builder(map.remaining() / 2 + 1, false);
+        builder.accept(map);
+        return builder.build();
+    }
+
+    /**
+     * Memory-maps an ASCII map file and reads it in place, the file content is never copied into the heap.
+     */
+    public static ParsedBoard parse(Path file) {
+        return read(file, false).build();
+    }
+
+    /**
+     * Like parse(Path), but the cells go into a direct buffer, so neither the file nor the board take heap.
+     */
+    public static OffHeapBoard parseOffHeap(Path file) {
+        Builder builder = read(file, true);
+        builder.finish();
+        return new OffHeapBoard(builder.rows, builder.cols, builder.cells.flip());
+    }
+
+    private static Builder read(Path file, boolean direct) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // every cell takes at least one character and one separator
+            Builder builder = new Builder((int) Math.min(size / 2 + 1, Integer.MAX_VALUE - 8), direct);
+            for (long position = 0; position < size; position += MAX_MAPPING) {
+                builder.accept(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPING, size - position)));
+            }
+            return builder;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static char toChar(byte cell) {
+        return switch (cell) {
+            case UNKNOWN -> '?';
+            case MINE -> 'x';
+            default -> (char) ('0' + cell);
+        };
+    }
+
+    private static final class Builder {
+        // heap buffer for ParsedBoard, direct buffer for OffHeapBoard
+        private final boolean direct;
+        private ByteBuffer cells;
+        private int rows = 0;
+        private int cols = -1;
+        private int colsInRow = 0;
+
+        Builder() {
+            this(256, false);
+        }
+
+        Builder(int capacity, boolean direct) {
+            this.direct = direct;
+            cells = allocate(Math.max(capacity, 16));
+        }
+
+        private ByteBuffer allocate(int capacity) {
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        void accept(ByteBuffer buffer) {
+            for (int i = buffer.position(); i < buffer.limit(); i++)
+                accept((char) buffer.get(i));
+        }
+
+        void accept(char c) {
+            switch (c) {
+                case ' ', '\t', '\r' -> { }
+                case '\n' -> endRow();
+                case 'x' -> add(MINE);
+                case '?' -> add(UNKNOWN);
+                default -> {
+                    if (c < '0' || c > '8')
+                        throw new IllegalArgumentException("Unexpected character '" + c + "' in row " + rows);
+                    add((byte) (c - '0'));
+                }
+            }
+        }
+
+        private void add(byte cell) {
+            if (!cells.hasRemaining())
+                cells = allocate(cells.capacity() * 2).put(cells.flip());
+            cells.put(cell);
+            colsInRow++;
+        }
+
+        private void endRow() {
+            if (colsInRow == 0)
+                return;
+            if (cols < 0)
+                cols = colsInRow;
+            else if (cols != colsInRow)
+                throw new IllegalArgumentException("Row " + rows + " has " + colsInRow + " cells instead of " + cols);
+            rows++;
+            colsInRow = 0;
+        }
+
+        void finish() {
+            endRow();
+            if (rows == 0)
+                throw new IllegalArgumentException("Empty map");
+        }
+
+        ParsedBoard build() {
+            finish();
+            byte[] array = cells.array();
+            return new ParsedBoard(rows, cols, cells.position() == array.length ? array : Arrays.copyOf(array, cells.position()));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * Outcome of one board of a batch run. solution is null if solving failed, e.g. with a BombError in failure.
+ */
+public record BoardResult(BoardSpec board, String solution, Throwable failure, long nanos) {
+
+    public boolean isSolved() {
+        return solution != null && !solution.equals("?");
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * One board for a batch run: the map sent to the user, the number of mines and the game to open cells in.
+ */
+public record BoardSpec(String name, String map, int mines, MineOracle game) {
+}
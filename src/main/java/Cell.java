@@ -1,71 +1,75 @@
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Neighbour states are kept as bit masks in a 7x7 frame centred on the cell
+ * (bit (dr + 3) * 7 + (dc + 3) stands for the cell at offset dr, dc).
+ * Only the inner 3x3 ring is used for the own neighbours, but the masks of every cell up to two rows or cols away
+ * can be shifted into this frame, so common and uncommon unknowns are plain AND / AND NOT operations.
+ */
 public class Cell {
+    private static final int FRAME = 7;
+    private static final int CENTRE = 3;
+
     private final int row;
     private final int col;
+    private final Cell[][] grid;
     private boolean isMine = false;
     private int mines = -1;
-    private final List<Cell> freeNeighbours = new ArrayList<>();
-    private final List<Cell> mineNeighbours = new ArrayList<>();
-    private final List<Cell> unknownNeighbours = new ArrayList<>();
-
-    public Cell(int row, int col, String boardEntry) {
+    private long freeNeighbours = 0L;
+    private long mineNeighbours = 0L;
+    private long unknownNeighbours = 0L;
+    // cached for the subset rules, cleared whenever the own unknowns or the free neighbours of one of them change
+    private long freeNeighboursOfUnknowns = 0L;
+    private boolean freeNeighboursOfUnknownsValid = false;
+
+    public Cell(int row, int col, byte boardEntry, Cell[][] grid) {
         this.row = row;
         this.col = col;
+        this.grid = grid;
         switch (boardEntry) {
-            case "x":
+            case BoardParser.MINE:
                 isMine = true;
                 break;
-            case "?":
+            case BoardParser.UNKNOWN:
                 break;
             default:
-                mines = Integer.parseInt(boardEntry);
+                mines = boardEntry;
                 break;
         }
     }
 
     public void addUnknownNeighbour(Cell cell) {
-        unknownNeighbours.add(cell);
+        unknownNeighbours |= bitOf(cell);
     }
 
     public void addMineNeighbour(Cell cell) {
-        mineNeighbours.add(cell);
+        mineNeighbours |= bitOf(cell);
     }
 
     public void addFreeNeighbour(Cell cell) {
-        freeNeighbours.add(cell);
+        freeNeighbours |= bitOf(cell);
     }
 
     public List<Cell> getMinesList() {
-        return new ArrayList<>(mineNeighbours);
+        return cellsOf(mineNeighbours);
     }
 
     public List<Cell> getEmptyFieldsList() {
-        return new ArrayList<>(freeNeighbours);
+        return cellsOf(freeNeighbours);
     }
 
     public List<Cell> getUnknownsList() {
-        return new ArrayList<>(unknownNeighbours);
-    }
-
-    public Set<Cell> getCommonUnknowns(Cell other) {
-        Set<Cell> commonUnknowns = new HashSet<>();
-        for (Cell cell : other.getUnknownsList()) {
-            if (unknownNeighbours.contains(cell)) commonUnknowns.add(cell);
-        }
-        return commonUnknowns;
+        return cellsOf(unknownNeighbours);
     }
 
-    public int getMaxCommonMines(Cell other) {
-        return Math.min(Math.min(getUnknownMines(), other.getUnknownMines()), getCommonUnknowns(other).size());
+    public int getUnknownCount() {
+        return Long.bitCount(unknownNeighbours);
     }
 
-    public int getMaxCommonFree(Cell other) {
-        return Math.min(Math.min(getUnknownFree(), other.getUnknownFree()), getCommonUnknowns(other).size());
+    public boolean hasFreeNeighbours() {
+        return freeNeighbours != 0L;
     }
 
     public int getRow() {
@@ -86,159 +90,176 @@ public class Cell {
         declareCellFreeForNeighbors(this);
     }
 
+    public boolean isMine() {
+        return isMine;
+    }
+
     public boolean isFree(){
         return mines != -1;
     }
 
     public int getUnknownMines() {
-        return mines - mineNeighbours.size();
+        return mines - Long.bitCount(mineNeighbours);
     }
 
     public int getUnknownFree() {
-        return unknownNeighbours.size() - getUnknownMines();
-    }
-
-    public List<Cell> getCellsNotInUnknownsList(List<Cell> list) {
-        List<Cell> result = new ArrayList<>(list);
-        result.removeAll(unknownNeighbours);
-        return result;
+        return Long.bitCount(unknownNeighbours) - getUnknownMines();
     }
 
     public void setCellMine(Cell cell) {
-        if (unknownNeighbours.contains(cell)) {
-            unknownNeighbours.remove(cell);
-            mineNeighbours.add(cell);
+        long bit = bitOf(cell);
+        if ((unknownNeighbours & bit) != 0L) {
+            unknownNeighbours &= ~bit;
+            mineNeighbours |= bit;
+            freeNeighboursOfUnknownsValid = false;
             declareCellMineForNeighbors(cell);
         }
     }
 
     public void setCellFree(Cell cell) {
-        if (unknownNeighbours.contains(cell)) {
-            unknownNeighbours.remove(cell);
-            freeNeighbours.add(cell);
+        long bit = bitOf(cell);
+        if ((unknownNeighbours & bit) != 0L) {
+            unknownNeighbours &= ~bit;
+            freeNeighbours |= bit;
+            freeNeighboursOfUnknownsValid = false;
             declareCellFreeForNeighbors(cell);
         }
     }
 
     public void declareCellFreeForNeighbors(Cell cell) {
-        freeNeighbours.forEach(neighbor -> neighbor.setCellFree(cell));
-        unknownNeighbours.forEach(neighbour -> neighbour.setCellFree(cell));
+        for (long mask = freeNeighbours | unknownNeighbours; mask != 0L; mask &= mask - 1) {
+            Cell neighbour = cellAt(Long.numberOfTrailingZeros(mask));
+            // the free neighbours of this cell may have changed, which the neighbour has cached
+            neighbour.freeNeighboursOfUnknownsValid = false;
+            neighbour.setCellFree(cell);
+        }
     }
 
     public void declareCellMineForNeighbors(Cell cell) {
-        freeNeighbours.forEach(neighbor -> neighbor.setCellMine(cell));
-        unknownNeighbours.forEach(neighbour -> neighbour.setCellMine(cell));
+        for (long mask = freeNeighbours | unknownNeighbours; mask != 0L; mask &= mask - 1) {
+            cellAt(Long.numberOfTrailingZeros(mask)).setCellMine(cell);
+        }
     }
 
     public boolean allUnknownAreFree() {
-        if (mines == mineNeighbours.size()) { // all mines are identified
-            freeNeighbours.addAll(unknownNeighbours);
-            List<Cell> temp = new ArrayList<>(unknownNeighbours);
-            unknownNeighbours.clear();
-            temp.forEach(this::declareCellFreeForNeighbors);
+        if (mines == Long.bitCount(mineNeighbours)) { // all mines are identified
+            long temp = unknownNeighbours;
+            freeNeighbours |= temp;
+            unknownNeighbours = 0L;
+            freeNeighboursOfUnknownsValid = false;
+            for (; temp != 0L; temp &= temp - 1) {
+                declareCellFreeForNeighbors(cellAt(Long.numberOfTrailingZeros(temp)));
+            }
             return true;
         }
         return false;
     }
 
     public boolean allUnknownAreMines() {
-        if (getUnknownMines() == unknownNeighbours.size()) {
-            mineNeighbours.addAll(unknownNeighbours);
-            List<Cell> temp = new ArrayList<>(unknownNeighbours);
-            unknownNeighbours.clear();
-            temp.forEach(this::declareCellMineForNeighbors);
+        if (getUnknownMines() == Long.bitCount(unknownNeighbours)) {
+            long temp = unknownNeighbours;
+            mineNeighbours |= temp;
+            unknownNeighbours = 0L;
+            freeNeighboursOfUnknownsValid = false;
+            for (; temp != 0L; temp &= temp - 1) {
+                declareCellMineForNeighbors(cellAt(Long.numberOfTrailingZeros(temp)));
+            }
             return true;
         }
         return false;
     }
 
     public List<Cell> foundNewMinesFromSubset() {
-        // build list of neighbors with common unknowns and check if one of them indicates a free cell
-        List<Cell> neigboursWithCommonUnknowns = new ArrayList<>();
-        for (Cell other : getFreeNeighboursOfUnknowns()) {
-            List<Cell> uncommon = other.getCellsNotInUnknownsList(unknownNeighbours);
-            if (!uncommon.isEmpty()) {
-                neigboursWithCommonUnknowns.add(other);
-                if (allUncommonMustBeMinesRespFree(uncommon, other, true)) {
-                    uncommon.forEach(this::setCellMine);
-                    return uncommon;
-                }
-            }
-        }
-        // check if combination of two subsets indicates a free cell
-        if (neigboursWithCommonUnknowns.size() >= 2) {
-            for (Cell cell1 : neigboursWithCommonUnknowns) {
-                for (Cell cell2 : neigboursWithCommonUnknowns) {
-                    if (unknownsAreDisjoint(cell1, cell2)) {
-                        // subtract both subsets from unknownNeighbors
-                        List<Cell> cellsInNoneOfSubsets = cell1.getCellsNotInUnknownsList(
-                                cell2.getCellsNotInUnknownsList(unknownNeighbours));
-                        int mineDifference = getUnknownMines() - getMaxCommonMines(cell1) - getMaxCommonMines(cell2);
-                        if (cellsInNoneOfSubsets.size() == mineDifference) {
-                            cellsInNoneOfSubsets.forEach(this::setCellMine);
-                            return cellsInNoneOfSubsets;
-                        }
-                    }
-                }
-            }
-        }
-        return new ArrayList<>();
+        long found = findUnknownsFromSubset(true);
+        List<Cell> result = cellsOf(found);
+        result.forEach(this::setCellMine);
+        return result;
     }
 
     public List<Cell> foundNewFreesFromSubset() {
-        // build list of neighbors with common unknowns and check if one of them indicates a free cell
-        List<Cell> neigboursWithCommonUnknowns = new ArrayList<>();
-        for (Cell other : getFreeNeighboursOfUnknowns()) {
-            List<Cell> uncommon = other.getCellsNotInUnknownsList(unknownNeighbours);
-            if (!uncommon.isEmpty()) {
-                neigboursWithCommonUnknowns.add(other);
-                if (allUncommonMustBeMinesRespFree(uncommon, other, false)) {
-                    uncommon.forEach(this::setCellFree);
-                    return uncommon;
-                }
+        long found = findUnknownsFromSubset(false);
+        List<Cell> result = cellsOf(found);
+        result.forEach(this::setCellFree);
+        return result;
+    }
+
+    /**
+     * @return mask of unknown neighbours that must be mines resp. free cells, 0 if none found
+     */
+    private long findUnknownsFromSubset(boolean searchingMine) {
+        // build mask of neighbors with common unknowns and check if one of them indicates a mine resp. free cell
+        long neighboursWithCommonUnknowns = 0L;
+        for (long mask = getFreeNeighboursOfUnknowns(); mask != 0L; mask &= mask - 1) {
+            int index = Long.numberOfTrailingZeros(mask);
+            Cell other = cellAt(index);
+            // a cell only known to be free (not opened, in a hint session) has no number to compare with
+            if (!other.isFree())
+                continue;
+            long otherUnknowns = shiftIntoFrame(other, other.unknownNeighbours);
+            if ((unknownNeighbours & ~otherUnknowns) != 0L) {
+                neighboursWithCommonUnknowns |= 1L << index;
+                long found = SubsetRules.fromSubset(unknownNeighbours, getUnknownMines(), otherUnknowns,
+                        other.getUnknownMines(), searchingMine);
+                if (found != 0L)
+                    return found;
             }
         }
-        // check if combination of two subsets indicates a free cell
-        if (neigboursWithCommonUnknowns.size() >= 2) {
-            for (Cell cell1 : neigboursWithCommonUnknowns) {
-                for (Cell cell2 : neigboursWithCommonUnknowns) {
-                    if (unknownsAreDisjoint(cell1, cell2)) {
-                        // subtract both subsets from unknownNeighbors
-                        List<Cell> cellsInNoneOfSubsets = cell1.getCellsNotInUnknownsList(
-                                cell2.getCellsNotInUnknownsList(unknownNeighbours));
-                        int freeDifference = getUnknownFree() - getMaxCommonFree(cell1) - getMaxCommonFree(cell2);
-                        if (cellsInNoneOfSubsets.size() == freeDifference) {
-                            cellsInNoneOfSubsets.forEach(this::setCellFree);
-                            return cellsInNoneOfSubsets;
-                        }
-                    }
+        // check if combination of two subsets indicates a mine resp. free cell
+        if (Long.bitCount(neighboursWithCommonUnknowns) >= 2) {
+            for (long mask1 = neighboursWithCommonUnknowns; mask1 != 0L; mask1 &= mask1 - 1) {
+                Cell cell1 = cellAt(Long.numberOfTrailingZeros(mask1));
+                long unknowns1 = shiftIntoFrame(cell1, cell1.unknownNeighbours);
+                for (long mask2 = mask1 & (mask1 - 1); mask2 != 0L; mask2 &= mask2 - 1) {
+                    Cell cell2 = cellAt(Long.numberOfTrailingZeros(mask2));
+                    long unknowns2 = shiftIntoFrame(cell2, cell2.unknownNeighbours);
+                    long found = SubsetRules.fromTwoSubsets(unknownNeighbours, getUnknownMines(), unknowns1,
+                            cell1.getUnknownMines(), unknowns2, cell2.getUnknownMines(), searchingMine);
+                    if (found != 0L)
+                        return found;
                 }
             }
         }
-        return new ArrayList<>();
+        return 0L;
     }
 
-    private boolean allUncommonMustBeMinesRespFree(List<Cell> uncommon, Cell other, boolean searchingMine) {
-        if (searchingMine) {
-            int mineDifference = getUnknownMines() - getMaxCommonMines(other);
-            return uncommon.size() == mineDifference;
-        } else {
-            int freeDifference = getUnknownFree() - getMaxCommonFree(other);
-            return uncommon.size() == freeDifference;
+    /**
+     * @return mask of all free neighbours of the own unknown neighbours, in the frame of this cell
+     */
+    private long getFreeNeighboursOfUnknowns() {
+        if (freeNeighboursOfUnknownsValid)
+            return freeNeighboursOfUnknowns;
+        long secondNeighbours = 0L;
+        for (long mask = unknownNeighbours; mask != 0L; mask &= mask - 1) {
+            Cell unknown = cellAt(Long.numberOfTrailingZeros(mask));
+            secondNeighbours |= shiftIntoFrame(unknown, unknown.freeNeighbours);
         }
+        freeNeighboursOfUnknowns = secondNeighbours;
+        freeNeighboursOfUnknownsValid = true;
+        return secondNeighbours;
     }
 
+    private long bitOf(Cell cell) {
+        return 1L << ((cell.row - row + CENTRE) * FRAME + cell.col - col + CENTRE);
+    }
 
-    private boolean unknownsAreDisjoint(Cell cell1, Cell cell2) {
-        if (cell1.equals(cell2)) return false;
-        if (cell1.getUnknownsList().removeAll(cell2.getUnknownsList())) return false;
-        return !cell2.getUnknownsList().removeAll(cell1.getUnknownsList());
+    private Cell cellAt(int index) {
+        return grid[row + index / FRAME - CENTRE][col + index % FRAME - CENTRE];
     }
 
-    public Set<Cell> getFreeNeighboursOfUnknowns() {
-        Set<Cell> secondNeighbours = new HashSet<>();
-        unknownNeighbours.forEach(unknown -> secondNeighbours.addAll(unknown.freeNeighbours));
-        return secondNeighbours;
+    /**
+     * Moves a mask from the frame of other (at most two rows and cols away) into the frame of this cell.
+     */
+    private long shiftIntoFrame(Cell other, long mask) {
+        int shift = (other.row - row) * FRAME + other.col - col;
+        return shift >= 0 ? mask << shift : mask >>> -shift;
+    }
+
+    private List<Cell> cellsOf(long mask) {
+        List<Cell> list = new ArrayList<>(Long.bitCount(mask));
+        for (; mask != 0L; mask &= mask - 1) {
+            list.add(cellAt(Long.numberOfTrailingZeros(mask)));
+        }
+        return list;
     }
 
     @Override
@@ -254,9 +275,9 @@ public class Cell {
                 '}';
     }
 
-    private String getListString(List<Cell> list) {
+    private String getListString(long mask) {
         return "{"
-                + list.stream()
+                + cellsOf(mask).stream()
                 .map(cell -> "(" + cell.getRow() + "," + cell.getCol() + ")")
                 .collect(Collectors.joining(", "))
                 + "}";
@@ -1,71 +1,282 @@
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class CombinationTest {
-    
-    public static List<List<Cell>> getPossibleMineLists(List<Cell> freeCells, List<Cell> unknownCells, int minMines, int maxMines) {
-        List<List<Cell>> possibleMineLists = new ArrayList<>();
-        List<List<Cell>> allCombinations = getAllCombinationsOf(unknownCells);
-        for (List<Cell> combination : allCombinations) {
-            if (combination.size() <= maxMines && combination.size() >= minMines && combinationIsValidForFreeCells(combination, freeCells)) {
-                possibleMineLists.add(combination);
-            }
+    // smaller components are done faster than the tasks are forked, on a single core it never pays
+    public static final int DEFAULT_PARALLEL_MIN_CELLS = ForkJoinPool.getCommonPoolParallelism() > 1 ? 24 : Integer.MAX_VALUE;
+
+    public static MineCountTable countMineLists(List<Cell> freeCells, List<Cell> unknownCells, int minMines, int maxMines) {
+        return countMineLists(freeCells, unknownCells, minMines, maxMines, false);
+    }
+
+    public static MineCountTable countMineLists(List<Cell> freeCells, List<Cell> unknownCells, int minMines, int maxMines,
+                                                boolean onlySureCells) {
+        return countMineLists(freeCells, unknownCells, minMines, maxMines, onlySureCells, DEFAULT_PARALLEL_MIN_CELLS);
+    }
+
+    /**
+     * @param onlySureCells stop as soon as every cell was seen both as mine and as free, the table is then
+     *                      incomplete and only tells that there is no sure cell
+     * @param parallelMinCells components with at least this many unknown cells are enumerated on the common fork/join pool
+     */
+    public static MineCountTable countMineLists(List<Cell> freeCells, List<Cell> unknownCells, int minMines, int maxMines,
+                                                boolean onlySureCells, int parallelMinCells) {
+        MineCountTable table = new MineCountTable(unknownCells.size());
+        SureCandidates candidates = onlySureCells ? new SureCandidates(unknownCells.size()) : null;
+        Search search = new Search(freeCells, unknownCells, minMines, maxMines, table, candidates);
+        if (!search.constraintsAreSatisfiable())
+            return table;
+        if (unknownCells.size() >= parallelMinCells) {
+            // about eight tasks per core, so a few tasks with pruned subtrees don't leave cores idle
+            int splitDepth = Math.min(32 - Integer.numberOfLeadingZeros(ForkJoinPool.getCommonPoolParallelism()) + 3, unknownCells.size());
+            table = ForkJoinPool.commonPool().invoke(new Fork(search, 0, splitDepth));
         }
-        possibleMineLists.sort(Comparator.comparingInt(List::size));
-        return possibleMineLists;
+        else search.decide(0);
+        if (candidates != null && candidates.exhausted)
+            table.markIncomplete();
+        return table;
     }
 
-    private static boolean combinationIsValidForFreeCells(List<Cell> combination, List<Cell> freeCells) {
-        int[] mineCounts = new int[freeCells.size()];
-        for (int i = 0; i < freeCells.size(); i++) {
-            Cell freeCell = freeCells.get(i);
-            for (Cell unknownCell : combination) {
-                if (unknownCell.getEmptyFieldsList().contains(freeCell))
-                    mineCounts[i]++;
+    /**
+     * Cells seen only as mine or only as free in the mine lists found so far, shared by all tasks of a search.
+     * Once there are none left, no cell can be sure any more.
+     */
+    private static class SureCandidates {
+        private static final int SEEN_MINE = 1;
+        private static final int SEEN_FREE = 2;
+        private final AtomicIntegerArray seen;
+        private final AtomicInteger remaining;
+        private volatile boolean exhausted;
+
+        SureCandidates(int cellCount) {
+            seen = new AtomicIntegerArray(cellCount);
+            remaining = new AtomicInteger(cellCount);
+            exhausted = cellCount == 0;
+        }
+
+        /**
+         * @return true if the cell has now been seen both ways
+         */
+        boolean see(int cell, boolean mine) {
+            int bit = mine ? SEEN_MINE : SEEN_FREE;
+            int before = seen.get(cell);
+            if ((before & bit) == 0) {
+                before = seen.getAndAccumulate(cell, bit, (a, b) -> a | b);
+                if (before != (SEEN_MINE | SEEN_FREE) && (before | bit) == (SEEN_MINE | SEEN_FREE)
+                        && remaining.decrementAndGet() == 0)
+                    exhausted = true;
             }
-            if (mineCounts[i] != freeCell.getUnknownMines())
-                return false;
+            return (before | bit) == (SEEN_MINE | SEEN_FREE);
         }
-        return true;
     }
 
-    private static List<List<Cell>> getAllCombinationsOf(List<Cell> baseList) {
-        List<List<Cell>> allCombinations = new ArrayList<>();
-        allCombinations.add(List.of());
-        for (Cell cell : baseList) {
-            List<List<Cell>> tempList = new ArrayList<>(allCombinations);
-            for (List<Cell> combination : tempList) {
-                List<Cell> newCombination = new ArrayList<>(combination);
-                newCombination.add(cell);
-                allCombinations.add(newCombination);
+    /**
+     * Decides the first splitDepth unknown cells by forking a task for either value,
+     * every task enumerates the rest of the cells sequentially into its own table, the tables are added up at the end.
+     */
+    private static class Fork extends RecursiveTask<MineCountTable> {
+        private static final long serialVersionUID = 1L;
+        private final Search search;
+        private final int position;
+        private final int splitDepth;
+
+        Fork(Search search, int position, int splitDepth) {
+            this.search = search;
+            this.position = position;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected MineCountTable compute() {
+            if (position >= splitDepth) {
+                search.decide(position);
+                return search.result;
             }
+            List<Fork> branches = new ArrayList<>(2);
+            Search free = search.copy();
+            if (free.assumeFree(position))
+                branches.add(new Fork(free, position + 1, splitDepth));
+            Search mine = search.copy();
+            if (mine.assumeMine(position))
+                branches.add(new Fork(mine, position + 1, splitDepth));
+            MineCountTable table = new MineCountTable(search.unknownCells.size());
+            for (Fork branch : invokeAll(branches))
+                table.addAll(branch.join());
+            return table;
         }
-        return allCombinations;
     }
 
-    public static List<Cell> getSureMines(List<List<Cell>> possibleMineLists, List<Cell> reachableUnknowns) {
-        List<Cell> sureMines = new ArrayList<>();
-        for (Cell cell : reachableUnknowns) {
-            if (isInAllLists(cell, possibleMineLists))
-                sureMines.add(cell);
+    /**
+     * Depth-first search over the unknown cells. Every free cell keeps its number of still missing mines
+     * and its number of undecided unknown neighbours, so a branch is cut as soon as one of them
+     * gets more mines than it shows or can no longer reach its number.
+     */
+    private static class Search {
+        private static final int INTERRUPT_CHECK_INTERVAL = 1 << 12;
+        private final List<Cell> unknownCells;
+        private final int minMines;
+        private final int maxMines;
+        private final MineCountTable result;
+        private final int[][] freeCellsOfUnknown;
+        private final int[] missingMines;
+        private final int[] undecidedUnknowns;
+        private final int[] mines;
+        private int mineCount = 0;
+        // null if the whole table is needed
+        private final SureCandidates sureCandidates;
+        // cells not yet seen both ways as far as this search knows
+        private final int[] candidates;
+        private int candidateCount;
+        private final boolean[] isMine;
+        // the thread that started the search, the tasks of a parallel search stop when it is interrupted
+        private final Thread owner;
+        private int untilInterruptCheck = INTERRUPT_CHECK_INTERVAL;
+
+        Search(List<Cell> freeCells, List<Cell> unknownCells, int minMines, int maxMines, MineCountTable result,
+               SureCandidates sureCandidates) {
+            this.unknownCells = unknownCells;
+            this.minMines = minMines;
+            this.maxMines = maxMines;
+            this.result = result;
+            this.sureCandidates = sureCandidates;
+            isMine = new boolean[unknownCells.size()];
+            owner = Thread.currentThread();
+            candidates = new int[unknownCells.size()];
+            candidateCount = sureCandidates == null ? 0 : unknownCells.size();
+            for (int i = 0; i < candidateCount; i++)
+                candidates[i] = i;
+            missingMines = new int[freeCells.size()];
+            undecidedUnknowns = new int[freeCells.size()];
+            freeCellsOfUnknown = new int[unknownCells.size()][];
+            mines = new int[unknownCells.size()];
+            Map<Cell, Integer> freeIndex = new HashMap<>();
+            for (int i = 0; i < freeCells.size(); i++) {
+                freeIndex.put(freeCells.get(i), i);
+                missingMines[i] = freeCells.get(i).getUnknownMines();
+            }
+            for (int i = 0; i < unknownCells.size(); i++) {
+                freeCellsOfUnknown[i] = unknownCells.get(i).getEmptyFieldsList().stream()
+                        .map(freeIndex::get)
+                        .filter(Objects::nonNull)
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+                for (int index : freeCellsOfUnknown[i])
+                    undecidedUnknowns[index]++;
+            }
+        }
+
+        private Search(Search other) {
+            unknownCells = other.unknownCells;
+            minMines = other.minMines;
+            maxMines = other.maxMines;
+            result = new MineCountTable(unknownCells.size());
+            freeCellsOfUnknown = other.freeCellsOfUnknown;
+            missingMines = other.missingMines.clone();
+            undecidedUnknowns = other.undecidedUnknowns.clone();
+            mines = other.mines.clone();
+            mineCount = other.mineCount;
+            sureCandidates = other.sureCandidates;
+            candidates = other.candidates.clone();
+            candidateCount = other.candidateCount;
+            isMine = other.isMine.clone();
+            owner = other.owner;
         }
-        return sureMines;
-    }
 
-    private static boolean isInAllLists(Cell cell, List<List<Cell>> mineLists) {
-        for (List<Cell> combination : mineLists) {
-            if (!combination.contains(cell)) {
-                return false;
+        /**
+         * @return a search at the same position with its own counters and an empty table
+         */
+        Search copy() {
+            return new Search(this);
+        }
+
+        /**
+         * Sets the cell at position free for good, without undo.
+         * @return false if that breaks a constraint
+         */
+        boolean assumeFree(int position) {
+            boolean valid = true;
+            for (int index : freeCellsOfUnknown[position]) {
+                if (missingMines[index] > --undecidedUnknowns[index]) valid = false;
             }
+            return valid;
+        }
+
+        /**
+         * Sets the cell at position to a mine for good, without undo.
+         * @return false if that breaks a constraint or exceeds maxMines
+         */
+        boolean assumeMine(int position) {
+            boolean valid = mineCount < maxMines;
+            for (int index : freeCellsOfUnknown[position]) {
+                --undecidedUnknowns[index];
+                if (--missingMines[index] < 0) valid = false;
+            }
+            mines[mineCount++] = position;
+            isMine[position] = true;
+            return valid;
+        }
+
+        boolean constraintsAreSatisfiable() {
+            for (int i = 0; i < missingMines.length; i++) {
+                if (missingMines[i] < 0 || missingMines[i] > undecidedUnknowns[i])
+                    return false;
+            }
+            return true;
         }
-        return true;
-    }
 
-    public static List<Cell> getSureFree(List<List<Cell>> possibleMineLists, List<Cell> unknownCells) {
-        List<Cell> sureFree = new ArrayList<>(unknownCells);
-        for (List<Cell> combination : possibleMineLists) {
-            sureFree.removeAll(combination);
+        void decide(int position) {
+            if (mineCount > maxMines || mineCount + unknownCells.size() - position < minMines)
+                return;
+            if (sureCandidates != null && sureCandidates.exhausted)
+                return;
+            if (--untilInterruptCheck == 0) {
+                untilInterruptCheck = INTERRUPT_CHECK_INTERVAL;
+                if (owner.isInterrupted())
+                    throw new CancellationException("Enumeration interrupted");
+            }
+            if (position == unknownCells.size()) {
+                result.addConfiguration(mines, mineCount);
+                if (sureCandidates != null) seeCandidates();
+                return;
+            }
+            int[] constraints = freeCellsOfUnknown[position];
+            // branch 1: cell is free
+            boolean valid = true;
+            for (int index : constraints) {
+                if (missingMines[index] > --undecidedUnknowns[index]) valid = false;
+            }
+            if (valid)
+                decide(position + 1);
+            // branch 2: cell is a mine
+            valid = true;
+            for (int index : constraints) {
+                if (--missingMines[index] < 0) valid = false;
+            }
+            if (valid) {
+                mines[mineCount++] = position;
+                isMine[position] = true;
+                decide(position + 1);
+                isMine[position] = false;
+                mineCount--;
+            }
+            for (int index : constraints) {
+                missingMines[index]++;
+                undecidedUnknowns[index]++;
+            }
+        }
+
+        private void seeCandidates() {
+            for (int i = 0; i < candidateCount; ) {
+                int cell = candidates[i];
+                if (sureCandidates.see(cell, isMine[cell]))
+                    candidates[i] = candidates[--candidateCount];
+                else i++;
+            }
         }
-        return sureFree;
     }
 
 }
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Enumeration results of frontier components, shared by the solvers it is set on. The result only depends on
+ * the shape of the component, the missing mines of its free cells and the bounds on its number of mines,
+ * so the same pattern (also rotated or mirrored) elsewhere on the board or on another board can reuse it.
+ * <p>
+ * The pattern is hashed Zobrist style: every cell, given by its position relative to the pattern and its content,
+ * gets a fixed pseudo random number and the hash is the XOR of them. Of the eight rotations and reflections
+ * the one with the smallest hash is the canonical one; the full encoding is compared as well, so collisions
+ * can't return a wrong result. The least recently used entries are dropped beyond the capacity.
+ * <p>
+ * The entries stay reachable as long as the cache: the table of a component with MAX_CACHED_CELLS cells
+ * takes up to about 20 KB, so SHARED may hold some 75 MB for the lifetime of the jvm. Solvers only use a cache when it is set explicitly.
+ */
+public class FrontierCache {
+    public static final FrontierCache SHARED = new FrontierCache(4096);
+    // larger components hardly repeat and their tables are big
+    static final int MAX_CACHED_CELLS = 48;
+    private static final int UNKNOWN_CONTENT = 0xFF;
+
+    private record Pattern(long hash, long[] encoding) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Pattern other && hash == other.hash && Arrays.equals(encoding, other.encoding);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+    }
+
+    private final Map<Pattern, MineCountTable> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public FrontierCache(int capacity) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Pattern, MineCountTable> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Same result as CombinationTest.countMineLists(freeCells, unknownCells, minMines, maxMines, onlySureCells,
+     * parallelMinCells), from the cache if possible. Incomplete tables are not cached.
+     */
+    public MineCountTable countMineLists(List<Cell> freeCells, List<Cell> unknownCells, int minMines, int maxMines,
+                                         boolean onlySureCells, int parallelMinCells) {
+        if (unknownCells.size() > MAX_CACHED_CELLS)
+            return CombinationTest.countMineLists(freeCells, unknownCells, minMines, maxMines, onlySureCells, parallelMinCells);
+        int[] order = new int[unknownCells.size()];
+        Pattern pattern = canonicalPattern(freeCells, unknownCells, Math.max(minMines, 0),
+                Math.min(maxMines, unknownCells.size()), order);
+        MineCountTable cached;
+        synchronized (entries) {
+            cached = entries.get(pattern);
+        }
+        int[] inverse = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+            inverse[order[i]] = i;
+        if (cached != null) {
+            hits.increment();
+            return cached.reordered(inverse);
+        }
+        misses.increment();
+        MineCountTable table = CombinationTest.countMineLists(freeCells, unknownCells, minMines, maxMines, onlySureCells,
+                parallelMinCells);
+        if (table.isComplete()) {
+            MineCountTable canonical = table.reordered(order);
+            synchronized (entries) {
+                entries.put(pattern, canonical);
+            }
+        }
+        return table;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Every cell is encoded as row << 44 | col << 24 | content << 16 | index in the component, sorted,
+     * so the index can be dropped for the pattern and tells the order of the unknown cells.
+     * @param order filled with the component index of every unknown cell in canonical order
+     */
+    private static Pattern canonicalPattern(List<Cell> freeCells, List<Cell> unknownCells, int minMines, int maxMines,
+                                            int[] order) {
+        int size = unknownCells.size() + freeCells.size();
+        long[] best = null;
+        long bestHash = 0;
+        long[] keys = new long[size];
+        for (int transform = 0; transform < 8; transform++) {
+            fillKeys(keys, freeCells, unknownCells, transform);
+            Arrays.sort(keys);
+            long hash = zobrist(maxMines) ^ zobrist(-1L - minMines);
+            for (long key : keys)
+                hash ^= zobrist(key >>> 16);
+            if (best == null || hash < bestHash || (hash == bestHash && Arrays.compare(keys, best) < 0)) {
+                best = keys.clone();
+                bestHash = hash;
+            }
+        }
+        long[] encoding = new long[size + 2];
+        encoding[0] = minMines;
+        encoding[1] = maxMines;
+        int unknown = 0;
+        for (int i = 0; i < size; i++) {
+            encoding[i + 2] = best[i] >>> 16;
+            if (((best[i] >>> 16) & 0xFF) == UNKNOWN_CONTENT)
+                order[unknown++] = (int) (best[i] & 0xFFFF);
+        }
+        return new Pattern(bestHash, encoding);
+    }
+
+    private static void fillKeys(long[] keys, List<Cell> freeCells, List<Cell> unknownCells, int transform) {
+        int minRow = Integer.MAX_VALUE;
+        int minCol = Integer.MAX_VALUE;
+        int size = unknownCells.size() + freeCells.size();
+        int[] rows = new int[size];
+        int[] cols = new int[size];
+        for (int i = 0; i < size; i++) {
+            Cell cell = i < unknownCells.size() ? unknownCells.get(i) : freeCells.get(i - unknownCells.size());
+            int row = (transform & 1) == 0 ? cell.getRow() : cell.getCol();
+            int col = (transform & 1) == 0 ? cell.getCol() : cell.getRow();
+            rows[i] = (transform & 2) == 0 ? row : -row;
+            cols[i] = (transform & 4) == 0 ? col : -col;
+            minRow = Math.min(minRow, rows[i]);
+            minCol = Math.min(minCol, cols[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            long content = i < unknownCells.size() ? UNKNOWN_CONTENT : freeCells.get(i - unknownCells.size()).getUnknownMines();
+            keys[i] = (long) (rows[i] - minRow) << 44 | (long) (cols[i] - minCol) << 24 | content << 16 | i;
+        }
+    }
+
+    /**
+     * Fixed pseudo random number for a cell key (SplitMix64 finalizer), standing in for a table of random numbers.
+     */
+    private static long zobrist(long key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,271 @@
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Reachable unknown cells that are linked to each other through shared uncompleted free cells.
+ * Different components don't influence each other except through the total number of mines,
+ * so each one can be enumerated on its own.
+ */
+public class FrontierComponent {
+    private final List<Cell> unknownCells = new ArrayList<>();
+    private final List<Cell> freeCells = new ArrayList<>();
+    private MineCountTable mineCounts;
+    // kept for the next global step of the solver, as long as no cell of the component changes
+    private boolean reductionFoundNothing = false;
+    private MineCountTable enumerated;
+    private int enumeratedMin;
+    private int enumeratedMax;
+
+    /**
+     * Smallest and largest possible number of mines in all components together.
+     */
+    public record MineTotals(int min, int max) {
+        static final MineTotals IMPOSSIBLE = new MineTotals(-1, -1);
+
+        public boolean isPossible() {
+            return max >= 0;
+        }
+    }
+
+    public static List<FrontierComponent> split(List<Cell> reachableUnknowns, List<Cell> uncompletedFree) {
+        Set<Cell> unvisitedUnknowns = new HashSet<>(reachableUnknowns);
+        Set<Cell> unvisitedFree = new HashSet<>(uncompletedFree);
+        List<FrontierComponent> components = new ArrayList<>();
+        for (Cell start : reachableUnknowns) {
+            if (!unvisitedUnknowns.remove(start))
+                continue;
+            FrontierComponent component = new FrontierComponent();
+            Deque<Cell> queue = new ArrayDeque<>();
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                Cell unknown = queue.poll();
+                component.unknownCells.add(unknown);
+                for (Cell free : unknown.getEmptyFieldsList()) {
+                    if (!unvisitedFree.remove(free))
+                        continue;
+                    component.freeCells.add(free);
+                    for (Cell next : free.getUnknownsList()) {
+                        if (unvisitedUnknowns.remove(next)) queue.add(next);
+                    }
+                }
+            }
+            components.add(component);
+        }
+        return components;
+    }
+
+    /**
+     * Replaces every component that is also in previous (same cells, same constraints) by that one,
+     * so its reduction and enumeration results are used again instead of being computed once more.
+     * @param changedAround tells if a cell or one of its neighbours changed since previous was split
+     */
+    public static List<FrontierComponent> reuseUnchanged(List<FrontierComponent> components,
+                                                         List<FrontierComponent> previous, Predicate<Cell> changedAround) {
+        Map<Cell, FrontierComponent> byFirstCell = new HashMap<>();
+        for (FrontierComponent component : previous)
+            byFirstCell.put(component.unknownCells.get(0), component);
+        List<FrontierComponent> result = new ArrayList<>(components.size());
+        for (FrontierComponent component : components) {
+            FrontierComponent old = byFirstCell.get(component.unknownCells.get(0));
+            // a component whose cells and their neighbours didn't change is split the same way again
+            boolean unchanged = old != null && old.unknownCells.size() == component.unknownCells.size()
+                    && old.freeCells.size() == component.freeCells.size()
+                    && component.unknownCells.stream().noneMatch(changedAround)
+                    && component.freeCells.stream().noneMatch(changedAround);
+            result.add(unchanged ? old : component);
+        }
+        return result;
+    }
+
+    /**
+     * Keeps only those mine lists of every component that fit into a total between minMines and maxMines
+     * together with some valid mine lists of the other components.
+     * The total is already used while enumerating: every component only gets the mines that are left
+     * after the least possible mines of the others, and must take what the others can't take at most.
+     * @param cache enumeration results of earlier components, null to enumerate every component
+     * @param onlySureCells the enumeration of a component may stop once none of its cells can be sure. Only allowed
+     *                      if the total can't restrict the mine lists, and then the result is only
+     *                      exact if no component stopped early
+     * @param parallelMinCells components with at least this many unknown cells are enumerated in parallel
+     * @return the possible totals of mines in all components, MineTotals.IMPOSSIBLE if there is no valid total
+     */
+    public static MineTotals restrictToTotalMines(List<FrontierComponent> components, int minMines, int maxMines,
+                                                  FrontierCache cache, boolean onlySureCells, int parallelMinCells) {
+        int count = components.size();
+        int[] lowerBounds = new int[count];
+        int[] upperBounds = new int[count];
+        int lowerSum = 0;
+        int upperSum = 0;
+        for (int i = 0; i < count; i++) {
+            components.get(i).fillMineBounds(lowerBounds, upperBounds, i);
+            lowerSum += lowerBounds[i];
+            upperSum += upperBounds[i];
+        }
+        if (lowerSum > maxMines || upperSum < minMines)
+            return MineTotals.IMPOSSIBLE;
+        for (int i = 0; i < count; i++) {
+            int componentMin = minMines - (upperSum - upperBounds[i]);
+            int componentMax = maxMines - (lowerSum - lowerBounds[i]);
+            components.get(i).enumerate(Math.max(componentMin, 0), componentMax, cache, onlySureCells, parallelMinCells);
+        }
+        boolean[][] prefixSums = new boolean[count + 1][];
+        boolean[][] suffixSums = new boolean[count + 1][];
+        prefixSums[0] = singleSum(maxMines);
+        suffixSums[count] = singleSum(maxMines);
+        for (int i = 0; i < count; i++) {
+            prefixSums[i + 1] = addSums(prefixSums[i], components.get(i).getPossibleMineCounts());
+            suffixSums[count - i - 1] = addSums(suffixSums[count - i], components.get(count - i - 1).getPossibleMineCounts());
+        }
+        for (int i = 0; i < count; i++) {
+            boolean[] otherSums = addSums(prefixSums[i], suffixSums[i + 1]);
+            MineCountTable table = components.get(i).mineCounts;
+            for (int mines = 0; mines <= table.getCellCount(); mines++) {
+                if (table.isPossible(mines) && !fitsIntoTotal(mines, otherSums, minMines, maxMines))
+                    table.removeMineCount(mines);
+            }
+        }
+        int largest = -1;
+        for (int total = maxMines; total >= Math.max(minMines, 0) && largest < 0; total--) {
+            if (prefixSums[count][total]) largest = total;
+        }
+        if (largest < 0)
+            return MineTotals.IMPOSSIBLE;
+        int smallest = Math.max(minMines, 0);
+        while (!prefixSums[count][smallest]) smallest++;
+        return new MineTotals(smallest, largest);
+    }
+
+    /**
+     * Free cells without common unknowns constrain disjoint parts of the component, so their missing mines
+     * add up to a lower bound and their missing free cells to an upper bound of the mines in the component.
+     */
+    private void fillMineBounds(int[] lowerBounds, int[] upperBounds, int index) {
+        Set<Cell> covered = new HashSet<>();
+        int lower = 0;
+        int upper = unknownCells.size();
+        for (Cell free : freeCells) {
+            List<Cell> unknowns = free.getUnknownsList();
+            if (unknowns.stream().noneMatch(covered::contains)) {
+                covered.addAll(unknowns);
+                lower += free.getUnknownMines();
+                upper -= free.getUnknownFree();
+            }
+        }
+        lowerBounds[index] = lower;
+        upperBounds[index] = upper;
+    }
+
+    private static boolean[] singleSum(int maxMines) {
+        boolean[] sums = new boolean[maxMines + 1];
+        sums[0] = true;
+        return sums;
+    }
+
+    private static boolean[] addSums(boolean[] first, boolean[] second) {
+        boolean[] sums = new boolean[first.length];
+        for (int i = 0; i < first.length; i++) {
+            if (!first[i]) continue;
+            for (int j = 0; j < second.length && i + j < sums.length; j++) {
+                if (second[j]) sums[i + j] = true;
+            }
+        }
+        return sums;
+    }
+
+    private static boolean fitsIntoTotal(int mines, boolean[] otherSums, int minMines, int maxMines) {
+        for (int others = Math.max(minMines - mines, 0); others <= maxMines - mines; others++) {
+            if (otherSums[others]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the cells that follow from the row-reduced constraints of this component, without enumerating.
+     */
+    public void findSureCellsByReduction(List<Cell> sureMines, List<Cell> sureFree) {
+        if (reductionFoundNothing)
+            return;
+        int found = sureMines.size() + sureFree.size();
+        LinearReduction.findSureCells(freeCells, unknownCells, sureMines, sureFree);
+        reductionFoundNothing = sureMines.size() + sureFree.size() == found;
+    }
+
+    /**
+     * A complete earlier enumeration over a wider range of mines is only restricted to the new range.
+     */
+    private void enumerate(int minMines, int maxMines, FrontierCache cache, boolean onlySureCells, int parallelMinCells) {
+        minMines = Math.max(minMines, 0);
+        maxMines = Math.min(maxMines, unknownCells.size());
+        if (enumerated != null && enumeratedMin <= minMines && maxMines <= enumeratedMax) {
+            mineCounts = enumerated.restrictedTo(minMines, maxMines);
+            return;
+        }
+        mineCounts = cache == null
+                ? CombinationTest.countMineLists(freeCells, unknownCells, minMines, maxMines, onlySureCells, parallelMinCells)
+                : cache.countMineLists(freeCells, unknownCells, minMines, maxMines, onlySureCells, parallelMinCells);
+        if (mineCounts.isComplete()) {
+            // restrictToTotalMines removes mine counts from mineCounts
+            enumerated = mineCounts.restrictedTo(minMines, maxMines);
+            enumeratedMin = minMines;
+            enumeratedMax = maxMines;
+        }
+    }
+
+    private boolean[] getPossibleMineCounts() {
+        boolean[] counts = new boolean[unknownCells.size() + 1];
+        for (int mines = 0; mines < counts.length; mines++)
+            counts[mines] = mineCounts.isPossible(mines);
+        return counts;
+    }
+
+    public long getConfigurationCount() {
+        long count = 0;
+        for (int mines = 0; mines <= unknownCells.size(); mines++)
+            count += mineCounts.getConfigurations(mines);
+        return count;
+    }
+
+    public List<Cell> getUnknownCells() {
+        return new ArrayList<>(unknownCells);
+    }
+
+    /**
+     * @return number of mine lists for every number of mines in the component
+     */
+    public BigInteger[] getConfigurationCounts() {
+        BigInteger[] counts = new BigInteger[unknownCells.size() + 1];
+        for (int mines = 0; mines < counts.length; mines++)
+            counts[mines] = BigInteger.valueOf(mineCounts.getConfigurations(mines));
+        return counts;
+    }
+
+    /**
+     * @return for every number of mines in the component and every unknown cell (in the order of getUnknownCells)
+     * the number of mine lists containing that cell
+     */
+    public BigInteger[][] getMineTallies() {
+        BigInteger[][] tallies = new BigInteger[unknownCells.size() + 1][unknownCells.size()];
+        for (int mines = 0; mines < tallies.length; mines++) {
+            for (int cell = 0; cell < unknownCells.size(); cell++)
+                tallies[mines][cell] = BigInteger.valueOf(mineCounts.getMineTally(mines, cell));
+        }
+        return tallies;
+    }
+
+    public List<Cell> getSureMines() {
+        List<Cell> sureMines = new ArrayList<>();
+        for (int cell = 0; cell < unknownCells.size(); cell++) {
+            if (mineCounts.isSureMine(cell)) sureMines.add(unknownCells.get(cell));
+        }
+        return sureMines;
+    }
+
+    public List<Cell> getSureFree() {
+        List<Cell> sureFree = new ArrayList<>();
+        for (int cell = 0; cell < unknownCells.size(); cell++) {
+            if (mineCounts.isSureFree(cell)) sureFree.add(unknownCells.get(cell));
+        }
+        return sureFree;
+    }
+}
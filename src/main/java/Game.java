@@ -1,35 +1,50 @@
-import java.util.Arrays;
-import java.util.stream.Stream;
+/**
+ * One game with its full map. The map is never changed after construction,
+ * so open can be called from several threads and many games can be played at the same time.
+ */
+public class Game implements MineOracle {
 
-public class Game {
+    private final ParsedBoard board;
+    private final GameEventSink events;
 
-    static String[][] board;
+    public Game(String s) {
+        this(s, GameEventSink.SILENT);
+    }
+
+    public Game(String s, GameEventSink events) {
+        this.board = BoardParser.parse(s);
+        this.events = events;
+    }
 
-    public static void newGame(String s) {
-        board = Stream.of(s.split("\n"))
-                .map(line -> line.split(" "))
-                .toArray(String[][]::new);
+    /**
+     * Plays a copy of the cells of board, which may still be changed by the caller.
+     */
+    public Game(ParsedBoard board, GameEventSink events) {
+        this.board = new ParsedBoard(board.rows(), board.cols(), board.cells().clone());
+        this.events = events;
     }
 
-    public static void read(String s) {
-        System.out.println("game map:");
-        System.out.println(s);
+    public void read(String s) {
+        events.mapRead(s);
     }
 
-    public static int getMinesN() {
-        int number = (int) Arrays.stream(board)
-                .flatMap(Arrays::stream)
-                .filter(cell -> cell.equals("x"))
-                .count();
-        System.out.println("Number of mines: " + number);
+    public int getMinesN() {
+        int number = 0;
+        for (byte cell : board.cells()) {
+            if (cell == BoardParser.MINE) number++;
+        }
+        events.minesCounted(number);
         return number;
     }
 
-    public static int open(int row, int col) {
-        if (board[row][col].equals("x")) {
-            System.out.printf("There was a bomb at row %d and col %d\n", row, col);
+    @Override
+    public int open(int row, int col) {
+        int mines = board.get(row, col);
+        if (mines == BoardParser.MINE) {
+            events.bombOpened(row, col);
             throw new BombError("Bomb");
         }
-        return board[row][col].charAt(0) - '0';
+        events.cellOpened(row, col, mines);
+        return mines;
     }
 }
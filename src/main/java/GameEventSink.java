@@ -0,0 +1,57 @@
+/**
+ * Receives the events of a game. All methods do nothing by default, so the SILENT sink costs nothing.
+ * A sink shared by games played in parallel has to be thread-safe.
+ */
+public interface GameEventSink {
+
+    enum Level {
+        BOMBS, // only mines that have been opened
+        INFO,  // additionally the map read and the number of mines
+        TRACE  // additionally every opened cell
+    }
+
+    GameEventSink SILENT = new GameEventSink() {
+    };
+
+    default void mapRead(String map) {
+    }
+
+    default void minesCounted(int mines) {
+    }
+
+    default void cellOpened(int row, int col, int mines) {
+    }
+
+    default void bombOpened(int row, int col) {
+    }
+
+    /**
+     * @return sink writing all events up to the given level to System.out
+     */
+    static GameEventSink console(Level level) {
+        return new GameEventSink() {
+            @Override
+            public void mapRead(String map) {
+                if (level.compareTo(Level.INFO) >= 0)
+                    System.out.println("game map:\n" + map);
+            }
+
+            @Override
+            public void minesCounted(int mines) {
+                if (level.compareTo(Level.INFO) >= 0)
+                    System.out.println("Number of mines: " + mines);
+            }
+
+            @Override
+            public void cellOpened(int row, int col, int mines) {
+                if (level == Level.TRACE)
+                    System.out.printf("Opened row %d and col %d: %d mines around%n", row, col, mines);
+            }
+
+            @Override
+            public void bombOpened(int row, int col) {
+                System.out.printf("There was a bomb at row %d and col %d%n", row, col);
+            }
+        };
+    }
+}
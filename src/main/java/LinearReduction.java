@@ -0,0 +1,107 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the constraints of the free cells as linear equations over the unknown cells
+ * (coefficient 1 for every unknown neighbour, the missing mines on the right side) and row-reduces them.
+ * A reduced row whose right side is the sum of its positive or of its negative coefficients
+ * can only be met in one way, so all its cells are sure. This takes polynomial time.
+ */
+public class LinearReduction {
+
+    /**
+     * Adds the cells forced by the row-reduced equations to sureMines and sureFree.
+     */
+    public static void findSureCells(List<Cell> freeCells, List<Cell> unknownCells, List<Cell> sureMines, List<Cell> sureFree) {
+        long[][] rows = buildRows(freeCells, unknownCells);
+        try {
+            reduce(rows, unknownCells.size());
+        } catch (ArithmeticException e) {
+            // coefficients got too large, leave it to the enumeration
+            return;
+        }
+        boolean[] decided = new boolean[unknownCells.size()];
+        for (long[] row : rows)
+            addForcedCells(row, unknownCells, decided, sureMines, sureFree);
+    }
+
+    private static long[][] buildRows(List<Cell> freeCells, List<Cell> unknownCells) {
+        Map<Cell, Integer> columns = new HashMap<>();
+        for (int i = 0; i < unknownCells.size(); i++)
+            columns.put(unknownCells.get(i), i);
+        int rightSide = unknownCells.size();
+        long[][] rows = new long[freeCells.size()][unknownCells.size() + 1];
+        for (int i = 0; i < freeCells.size(); i++) {
+            Cell free = freeCells.get(i);
+            for (Cell unknown : free.getUnknownsList()) {
+                Integer column = columns.get(unknown);
+                if (column != null) rows[i][column] = 1;
+            }
+            rows[i][rightSide] = free.getUnknownMines();
+        }
+        return rows;
+    }
+
+    /**
+     * Brings the rows into reduced row echelon form with integer coefficients, every row divided by its gcd.
+     */
+    private static void reduce(long[][] rows, int columns) {
+        int pivotRow = 0;
+        for (int column = 0; column < columns && pivotRow < rows.length; column++) {
+            int found = pivotRow;
+            while (found < rows.length && rows[found][column] == 0) found++;
+            if (found == rows.length) continue;
+            long[] pivot = rows[found];
+            rows[found] = rows[pivotRow];
+            rows[pivotRow] = pivot;
+            for (int i = 0; i < rows.length; i++) {
+                if (i == pivotRow || rows[i][column] == 0) continue;
+                long factor = rows[i][column];
+                for (int j = 0; j <= columns; j++)
+                    rows[i][j] = Math.subtractExact(Math.multiplyExact(rows[i][j], pivot[column]), Math.multiplyExact(pivot[j], factor));
+                divideByGcd(rows[i]);
+            }
+            pivotRow++;
+        }
+    }
+
+    private static void divideByGcd(long[] row) {
+        long gcd = 0;
+        for (long value : row)
+            gcd = gcd(gcd, Math.abs(value));
+        if (gcd > 1) {
+            for (int j = 0; j < row.length; j++)
+                row[j] /= gcd;
+        }
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static void addForcedCells(long[] row, List<Cell> unknownCells, boolean[] decided, List<Cell> sureMines, List<Cell> sureFree) {
+        long positive = 0;
+        long negative = 0;
+        for (int j = 0; j < unknownCells.size(); j++) {
+            if (row[j] > 0) positive += row[j];
+            else negative += row[j];
+        }
+        long rightSide = row[unknownCells.size()];
+        if (positive == 0 && negative == 0) return;
+        // all positive cells mines and all negative ones free, or the other way round
+        boolean positiveAreMines = rightSide == positive;
+        if (!positiveAreMines && rightSide != negative) return;
+        for (int j = 0; j < unknownCells.size(); j++) {
+            if (row[j] == 0 || decided[j]) continue;
+            decided[j] = true;
+            if ((row[j] > 0) == positiveAreMines) sureMines.add(unknownCells.get(j));
+            else sureFree.add(unknownCells.get(j));
+        }
+    }
+}
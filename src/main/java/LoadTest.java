@@ -0,0 +1,151 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Sweeps generated boards over size and mine density and prints one CSV line per board with time,
+ * allocated memory and outcome, to find where the solver gets slow.
+ * Boards are solved one after the other so the measurements don't disturb each other: a board that times out
+ * is interrupted, and the next one only starts after it stopped.
+ * The allocated memory is summed over all live threads, so it includes the fork/join workers enumerating
+ * large components; allocations of threads that end during a board are missed.
+ * <p>
+ * Arguments (all optional): sizes (square boards), densities, seeds per combination, reveal radius, timeout in seconds,
+ * e.g. {@code java -cp target/classes LoadTest 10,20,40,80 0.1,0.15,0.2 5 2 60}.
+ * Once a board times out, the larger sizes of the same density are skipped.
+ */
+public class LoadTest {
+
+    public record Run(int size, double density, long seed, int mines, String outcome, long nanos, long allocatedBytes) {
+
+        static String header() {
+            return "size,density,seed,mines,outcome,millis,allocatedKB";
+        }
+
+        String toCsv() {
+            return size + "," + density + "," + seed + "," + mines + "," + outcome + ","
+                    + nanos / 1_000_000 + "," + (allocatedBytes < 0 ? "" : allocatedBytes / 1024);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] sizes = args.length > 0 ? parseInts(args[0]) : new int[]{10, 20, 40, 80};
+        double[] densities = args.length > 1 ? parseDoubles(args[1]) : new double[]{0.1, 0.15, 0.2, 0.25};
+        int seeds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int revealRadius = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        long timeoutSeconds = args.length > 4 ? Long.parseLong(args[4]) : 60;
+        System.out.println(Run.header());
+        sweep(sizes, densities, seeds, revealRadius, timeoutSeconds, run -> System.out.println(run.toCsv()));
+    }
+
+    public static List<Run> sweep(int[] sizes, double[] densities, int seeds, int revealRadius, long timeoutSeconds,
+                                  Consumer<Run> listener) throws InterruptedException {
+        List<Run> runs = new ArrayList<>();
+        ExecutorService executor = newExecutor();
+        try {
+            for (double density : densities) {
+                boolean timedOut = false;
+                for (int size : sizes) {
+                    for (long seed = 0; seed < seeds && !timedOut; seed++) {
+                        Run run = runBoard(executor, size, density, seed, revealRadius, timeoutSeconds);
+                        if (run.outcome().equals("timeout")) {
+                            timedOut = true;
+                            if (!stopped(executor, timeoutSeconds)) {
+                                System.err.println("Solver of " + size + "x" + size + " ignores the interrupt, measurements may be disturbed");
+                                executor.shutdownNow();
+                                executor = newExecutor();
+                            }
+                        }
+                        runs.add(run);
+                        listener.accept(run);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return runs;
+    }
+
+    /**
+     * @return true if the interrupted board stopped within timeoutSeconds, the executor runs one task at a time
+     */
+    private static boolean stopped(ExecutorService executor, long timeoutSeconds) throws InterruptedException {
+        try {
+            executor.submit(() -> { }).get(timeoutSeconds, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Daemon thread, so a solver still running after its timeout doesn't keep the jvm alive.
+     */
+    private static ExecutorService newExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-test");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Run runBoard(ExecutorService executor, int size, double density, long seed, int revealRadius,
+                                long timeoutSeconds) throws InterruptedException {
+        BoardSpec board = BoardGenerator.generate(size + "x" + size, size, size, density, revealRadius, seed);
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        Future<String> solution = executor.submit(() -> new MineSweeper(board.map(), board.mines(), board.game()).solve());
+        String outcome;
+        try {
+            outcome = solution.get(timeoutSeconds, TimeUnit.SECONDS).equals("?") ? "unsolved" : "solved";
+        } catch (TimeoutException e) {
+            solution.cancel(true);
+            outcome = "timeout";
+        } catch (ExecutionException e) {
+            outcome = e.getCause() instanceof BombError ? "bomb" : "error:" + e.getCause().getClass().getSimpleName();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        boolean measured = !outcome.equals("timeout") && allocatedBefore >= 0 && allocatedAfter >= 0;
+        return new Run(size, density, seed, board.mines(), outcome, nanos, measured ? allocatedAfter - allocatedBefore : -1);
+    }
+
+    /**
+     * @return bytes allocated so far by all live threads, -1 if the jvm can't tell
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemoryEnabled()) {
+            long sum = 0;
+            for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                if (bytes > 0) sum += bytes;
+            }
+            return sum;
+        }
+        return -1;
+    }
+
+    private static int[] parseInts(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            values[i] = Integer.parseInt(parts[i].trim());
+        return values;
+    }
+
+    private static double[] parseDoubles(String list) {
+        String[] parts = list.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            values[i] = Double.parseDouble(parts[i].trim());
+        return values;
+    }
+}
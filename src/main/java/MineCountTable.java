@@ -0,0 +1,123 @@
+/**
+ * Result of the enumeration of one frontier component without the mine lists themselves:
+ * for every number of mines the number of valid mine lists and for every unknown cell
+ * the number of those lists that contain it. Memory depends on the number of cells only.
+ */
+public class MineCountTable {
+    private final int cellCount;
+    private final long[] configurations;
+    private final long[][] mineTallies;
+    private boolean complete = true;
+
+    public MineCountTable(int cellCount) {
+        this.cellCount = cellCount;
+        configurations = new long[cellCount + 1];
+        mineTallies = new long[cellCount + 1][];
+    }
+
+    /**
+     * Counts one valid mine list, given by the indices of its first mineCount mines.
+     */
+    public void addConfiguration(int[] mines, int mineCount) {
+        if (mineTallies[mineCount] == null)
+            mineTallies[mineCount] = new long[cellCount];
+        configurations[mineCount]++;
+        for (int i = 0; i < mineCount; i++)
+            mineTallies[mineCount][mines[i]]++;
+    }
+
+    /**
+     * Adds the mine lists counted in other, which must have the same cells.
+     */
+    public void addAll(MineCountTable other) {
+        complete &= other.complete;
+        for (int mineCount = 0; mineCount <= cellCount; mineCount++) {
+            if (other.configurations[mineCount] == 0) continue;
+            if (mineTallies[mineCount] == null)
+                mineTallies[mineCount] = new long[cellCount];
+            configurations[mineCount] += other.configurations[mineCount];
+            for (int i = 0; i < cellCount; i++)
+                mineTallies[mineCount][i] += other.mineTallies[mineCount][i];
+        }
+    }
+
+    /**
+     * @return a copy in which cell i is the cell order[i] of this table
+     */
+    public MineCountTable reordered(int[] order) {
+        MineCountTable copy = new MineCountTable(cellCount);
+        copy.complete = complete;
+        for (int mineCount = 0; mineCount <= cellCount; mineCount++) {
+            copy.configurations[mineCount] = configurations[mineCount];
+            if (mineTallies[mineCount] == null) continue;
+            copy.mineTallies[mineCount] = new long[cellCount];
+            for (int i = 0; i < cellCount; i++)
+                copy.mineTallies[mineCount][i] = mineTallies[mineCount][order[i]];
+        }
+        return copy;
+    }
+
+    /**
+     * @return a copy with only the mine lists of minMines to maxMines mines
+     */
+    public MineCountTable restrictedTo(int minMines, int maxMines) {
+        MineCountTable copy = new MineCountTable(cellCount);
+        copy.complete = complete;
+        for (int mineCount = Math.max(minMines, 0); mineCount <= Math.min(maxMines, cellCount); mineCount++) {
+            copy.configurations[mineCount] = configurations[mineCount];
+            if (mineTallies[mineCount] != null)
+                copy.mineTallies[mineCount] = mineTallies[mineCount].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * The enumeration stopped early because no cell could be sure any more: the counts are only a part of all
+     * mine lists and only isSureMine and isSureFree (both false for all cells) can be trusted.
+     */
+    public void markIncomplete() {
+        complete = false;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public boolean isPossible(int mineCount) {
+        return configurations[mineCount] > 0;
+    }
+
+    public long getConfigurations(int mineCount) {
+        return configurations[mineCount];
+    }
+
+    public long getMineTally(int mineCount, int cell) {
+        return configurations[mineCount] == 0 ? 0 : mineTallies[mineCount][cell];
+    }
+
+    public void removeMineCount(int mineCount) {
+        configurations[mineCount] = 0;
+        mineTallies[mineCount] = null;
+    }
+
+    public boolean isSureMine(int cell) {
+        long lists = 0;
+        long withMine = 0;
+        for (int mineCount = 0; mineCount <= cellCount; mineCount++) {
+            lists += configurations[mineCount];
+            withMine += getMineTally(mineCount, cell);
+        }
+        return lists > 0 && withMine == lists;
+    }
+
+    public boolean isSureFree(int cell) {
+        for (int mineCount = 0; mineCount <= cellCount; mineCount++) {
+            if (getMineTally(mineCount, cell) > 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Opens cells of one game: tells the number of mines around a cell or throws a BombError if the cell is a mine.
+ */
+public interface MineOracle {
+    int open(int row, int col);
+}
@@ -0,0 +1,115 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.*;
+
+/**
+ * Exact mine probabilities of the unknown cells. Every way to place the remaining mines counts once,
+ * so a combination of mine lists of the frontier components is weighted with the number of ways
+ * to put the other mines on the unreachable cells.
+ */
+public class MineProbabilities {
+
+    public static Map<Cell, Double> getMineProbabilities(List<FrontierComponent> components, List<Cell> unreachableCells, int remainingMines) {
+        Map<Cell, BigInteger> weights = new HashMap<>();
+        BigDecimal total = new BigDecimal(getMineWeights(components, unreachableCells, remainingMines, weights));
+        Map<Cell, Double> probabilities = new HashMap<>();
+        weights.forEach((cell, weight) -> probabilities.put(cell, new BigDecimal(weight).divide(total, MathContext.DECIMAL64).doubleValue()));
+        return probabilities;
+    }
+
+    public static Cell getSafestCell(List<FrontierComponent> components, List<Cell> unreachableCells, int remainingMines) {
+        Map<Cell, BigInteger> weights = new HashMap<>();
+        getMineWeights(components, unreachableCells, remainingMines, weights);
+        return weights.entrySet().stream()
+                .min(Map.Entry.<Cell, BigInteger>comparingByValue()
+                        .thenComparing(entry -> entry.getKey().getRow())
+                        .thenComparing(entry -> entry.getKey().getCol()))
+                .map(Map.Entry::getKey)
+                .orElseThrow();
+    }
+
+    /**
+     * Puts the number of mine placements with a mine on the cell into weights for every unknown cell.
+     * @return number of all mine placements
+     */
+    private static BigInteger getMineWeights(List<FrontierComponent> components, List<Cell> unreachableCells, int remainingMines, Map<Cell, BigInteger> weights) {
+        int count = components.size();
+        int unreachable = unreachableCells.size();
+        BigInteger[] unreachablePlacements = binomials(unreachable, remainingMines);
+        BigInteger[][] prefixCounts = new BigInteger[count + 1][];
+        BigInteger[][] suffixCounts = new BigInteger[count + 1][];
+        prefixCounts[0] = singleCount(remainingMines);
+        suffixCounts[count] = singleCount(remainingMines);
+        for (int i = 0; i < count; i++) {
+            prefixCounts[i + 1] = addCounts(prefixCounts[i], components.get(i).getConfigurationCounts());
+            suffixCounts[count - i - 1] = addCounts(suffixCounts[count - i], components.get(count - i - 1).getConfigurationCounts());
+        }
+        // frontier cells: mine lists of one component times all fitting placements of the others
+        for (int i = 0; i < count; i++) {
+            BigInteger[] otherCounts = addCounts(prefixCounts[i], suffixCounts[i + 1]);
+            FrontierComponent component = components.get(i);
+            List<Cell> unknownCells = component.getUnknownCells();
+            BigInteger[][] tallies = component.getMineTallies();
+            BigInteger[] cellWeights = new BigInteger[unknownCells.size()];
+            Arrays.fill(cellWeights, BigInteger.ZERO);
+            for (int mines = 0; mines < tallies.length && mines <= remainingMines; mines++) {
+                BigInteger weightOfMines = BigInteger.ZERO;
+                for (int others = 0; mines + others <= remainingMines; others++) {
+                    int rest = remainingMines - mines - others;
+                    if (rest <= unreachable)
+                        weightOfMines = weightOfMines.add(otherCounts[others].multiply(unreachablePlacements[rest]));
+                }
+                for (int j = 0; j < cellWeights.length; j++)
+                    cellWeights[j] = cellWeights[j].add(tallies[mines][j].multiply(weightOfMines));
+            }
+            for (int j = 0; j < cellWeights.length; j++)
+                weights.put(unknownCells.get(j), cellWeights[j]);
+        }
+        // unreachable cells: all of them have the same share of the mines left for them
+        BigInteger total = BigInteger.ZERO;
+        BigInteger unreachableWeight = BigInteger.ZERO;
+        BigInteger[] placementsWithMine = unreachable == 0 ? null : binomials(unreachable - 1, remainingMines);
+        for (int frontierMines = 0; frontierMines <= remainingMines; frontierMines++) {
+            int rest = remainingMines - frontierMines;
+            if (rest > unreachable) continue;
+            total = total.add(prefixCounts[count][frontierMines].multiply(unreachablePlacements[rest]));
+            if (rest > 0)
+                unreachableWeight = unreachableWeight.add(prefixCounts[count][frontierMines].multiply(placementsWithMine[rest - 1]));
+        }
+        for (Cell cell : unreachableCells)
+            weights.put(cell, unreachableWeight);
+        return total;
+    }
+
+    private static BigInteger[] singleCount(int maxMines) {
+        BigInteger[] counts = new BigInteger[maxMines + 1];
+        Arrays.fill(counts, BigInteger.ZERO);
+        counts[0] = BigInteger.ONE;
+        return counts;
+    }
+
+    private static BigInteger[] addCounts(BigInteger[] first, BigInteger[] second) {
+        BigInteger[] counts = new BigInteger[first.length];
+        Arrays.fill(counts, BigInteger.ZERO);
+        for (int i = 0; i < first.length; i++) {
+            if (first[i].signum() == 0) continue;
+            for (int j = 0; j < second.length && i + j < counts.length; j++)
+                counts[i + j] = counts[i + j].add(first[i].multiply(second[j]));
+        }
+        return counts;
+    }
+
+    /**
+     * @return n choose k for k = 0..maxK
+     */
+    private static BigInteger[] binomials(int n, int maxK) {
+        BigInteger[] binomials = new BigInteger[maxK + 1];
+        binomials[0] = BigInteger.ONE;
+        for (int k = 1; k <= maxK; k++) {
+            binomials[k] = k > n ? BigInteger.ZERO
+                    : binomials[k - 1].multiply(BigInteger.valueOf(n - k + 1)).divide(BigInteger.valueOf(k));
+        }
+        return binomials;
+    }
+}
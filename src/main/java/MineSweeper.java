@@ -1,169 +1,469 @@
+import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CancellationException;
 
 class MineSweeper {
 
-    private final String[][] board;
+    // state of every cell in row-major order, see ParsedBoard
+    private final byte[] board;
+    private final int rows;
+    private final int cols;
     private final int totalMines;
-    private final Set<Cell> foundMines = new HashSet<>();
-    private final Set<Cell> uncompletedCells = new HashSet<>();
+    // null for a hint session: cells found free are reported instead of opened
+    private final MineOracle game;
+    private final List<Cell> newlyFound = new ArrayList<>();
+    // cells are identified by their index in board (row * cols + col)
+    private final BitSet foundMines = new BitSet();
+    private int foundMineCount = 0;
+    private final BitSet uncompletedCells = new BitSet();
     private final Cell[][] cells;
+    // free cells whose rules have to be (re)checked, in the order they got affected: a ring buffer of ids,
+    // every cell is at most once in it
+    private final int[] pendingCells;
+    private int pendingHead = 0;
+    private int pendingCount = 0;
+    private final BitSet pendingSet = new BitSet();
+    // a change of a cell can alter the rules of free cells up to this distance (subset rules look two cells further)
+    private static final int AFFECTED_DISTANCE = 3;
+    private boolean guessing = false;
+    private int guessCount = 0;
+    private SolverMetrics metrics = null;
+    private FrontierCache frontierCache = null;
+    private int parallelMinCells = CombinationTest.DEFAULT_PARALLEL_MIN_CELLS;
+    // components of the last global step and the cells changed since, only components near a change are redone
+    private List<FrontierComponent> lastComponents = List.of();
+    private final BitSet changedCells = new BitSet();
 
-    public MineSweeper(final String s, final int nMines) {
+    public MineSweeper(final String s, final int nMines, final MineOracle game) {
+        this(BoardParser.parse(s), nMines, game);
+    }
+
+    /**
+     * Solver for a map file that is memory-mapped and parsed in place, for maps too large to be held as a String.
+     */
+    public static MineSweeper fromFile(final Path file, final int nMines, final MineOracle game) {
+        // the parsed cells belong to nobody else, so they need no copy
+        ParsedBoard parsed = BoardParser.parse(file);
+        return new MineSweeper(parsed.cells(), parsed.rows(), parsed.cols(), nMines, game);
+    }
+
+    /**
+     * Solves a copy of the cells of parsed, so the same ParsedBoard can be given to several solvers.
+     */
+    public MineSweeper(final ParsedBoard parsed, final int nMines, final MineOracle game) {
+        this(parsed.cells().clone(), parsed.rows(), parsed.cols(), nMines, game);
+    }
+
+    /**
+     * @param board cells in row-major order, changed while solving
+     */
+    private MineSweeper(final byte[] board, final int rows, final int cols, final int nMines, final MineOracle game) {
+        SolverEvents.BoardConstruction event = new SolverEvents.BoardConstruction();
+        event.begin();
         totalMines = nMines;
-        board = Stream.of(s.split("\n"))
-                .map(line -> line.split(" "))
-                .toArray(String[][]::new);
-        cells = new Cell[board.length][board[0].length];
+        this.game = game;
+        this.board = board;
+        this.rows = rows;
+        this.cols = cols;
+        cells = new Cell[rows][cols];
+        pendingCells = new int[rows * cols];
         // define cells
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[0].length; j++) {
-                Cell created = new Cell(i, j, board[i][j]);
-                if (board[i][j].equals("x"))
-                    foundMines.add(created);
-                else uncompletedCells.add(created);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                Cell created = new Cell(i, j, board[i * cols + j], cells);
+                if (board[i * cols + j] == BoardParser.MINE) {
+                    foundMines.set(i * cols + j);
+                    foundMineCount++;
+                }
+                else uncompletedCells.set(i * cols + j);
                 cells[i][j] = created;
             }
         }
         // tell cells about their neighbors
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[0].length; j++) {
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
                 addNeighbourDataToCell(i, j);
             }
         }
+        // initially every free cell has to be checked
+        for (Cell[] line : cells) {
+            for (Cell cell : line) {
+                if (cell.isFree()) enqueue(cell);
+            }
+        }
+        event.rows = rows;
+        event.cols = cols;
+        event.commit();
     }
 
+    /**
+     * In guessing mode solve() doesn't give up with "?" when nothing can be deduced any more,
+     * but opens the cell with the lowest mine probability and goes on. A wrong guess ends with a BombError.
+     */
+    public void setGuessing(boolean guessing) {
+        this.guessing = guessing;
+    }
+
+    public int getGuessCount() {
+        return guessCount;
+    }
+
+    /**
+     * Records the work of every rule in metrics, which may be shared by several solvers. No timing is done without.
+     */
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Enumeration results of frontier components are looked up in frontierCache first, e.g. FrontierCache.SHARED
+     * for solvers of many similar boards. Without one (the default) every component is enumerated again.
+     */
+    public void setFrontierCache(FrontierCache frontierCache) {
+        this.frontierCache = frontierCache;
+    }
+
+    /**
+     * Frontier components with at least parallelMinCells unknown cells are enumerated on the common fork/join pool,
+     * by default only when it has more than one thread. Integer.MAX_VALUE enumerates every component sequentially.
+     */
+    public void setParallelMinCells(int parallelMinCells) {
+        this.parallelMinCells = parallelMinCells;
+    }
+
+    /**
+     * Alternates the cell checking of the pending cells with a combinatorial step over the whole frontier
+     * until all mines are found or the combinatorial step finds nothing new.
+     * @throws CancellationException if the thread is interrupted while solving
+     */
     public String solve() {
-        iterateCellChecking();
-        if (totalMines > foundMines.size())
-            return treatRemainingMines();
-        openAllUncompletedFields();
-        return getBoardString();
+        boolean progress = true;
+        for (int round = 0; progress; round++) {
+            if (Thread.currentThread().isInterrupted())
+                throw new CancellationException("Solving interrupted in round " + round);
+            SolverEvents.Solve event = new SolverEvents.Solve();
+            event.begin();
+            iterateCellChecking();
+            if (totalMines > foundMineCount)
+                progress = treatRemainingMines();
+            else {
+                openAllUncompletedFields();
+                progress = false;
+            }
+            event.round = round;
+            event.foundMines = foundMineCount;
+            event.commit();
+        }
+        return totalMines > foundMineCount ? "?" : getBoardString();
     }
 
-    private String treatRemainingMines() {
-        int remainingMines = totalMines - foundMines.size();
+    /**
+     * @return false if no new cell could be found
+     */
+    private boolean treatRemainingMines() {
+        int remainingMines = totalMines - foundMineCount;
         List<Cell> unreachableCells = new ArrayList<>();
         List<Cell> reachableUnknowns = new ArrayList<>();
         List<Cell> uncompletedFree = new ArrayList<>();
-        for (Cell cell : uncompletedCells) {
+        for (int id = uncompletedCells.nextSetBit(0); id >= 0; id = uncompletedCells.nextSetBit(id + 1)) {
+            Cell cell = cellOf(id);
             if (cell.isFree()) uncompletedFree.add(cell);
             else {
-                if (cell.getEmptyFieldsList().isEmpty()) unreachableCells.add(cell);
+                if (!cell.hasFreeNeighbours()) unreachableCells.add(cell);
                 else reachableUnknowns.add(cell);
             }
         }
+        List<FrontierComponent> components = FrontierComponent.reuseUnchanged(
+                FrontierComponent.split(reachableUnknowns, uncompletedFree), lastComponents, this::changedAround);
+        lastComponents = components;
+        changedCells.clear();
+        if (foundCellsByLinearReduction(components))
+            return true;
         int minMines = remainingMines - unreachableCells.size();
-        return getResultForRemainingMines(minMines, remainingMines, reachableUnknowns, uncompletedFree, unreachableCells);
+        return getResultForRemainingMines(minMines, remainingMines, reachableUnknowns, components, unreachableCells);
+    }
+
+    /**
+     * Cheaper than the enumeration and finds everything that follows from combining the constraints linearly.
+     */
+    private boolean foundCellsByLinearReduction(List<FrontierComponent> components) {
+        long start = startTime();
+        List<Cell> sureMines = new ArrayList<>();
+        List<Cell> sureFree = new ArrayList<>();
+        for (FrontierComponent component : components)
+            component.findSureCellsByReduction(sureMines, sureFree);
+        boolean found = !sureMines.isEmpty() || !sureFree.isEmpty();
+        recordRule(SolverMetrics.Rule.LINEAR_REDUCTION, start, sureMines.size() + sureFree.size(), found);
+        addMines(sureMines);
+        addEmptyFields(sureFree);
+        return found;
     }
 
-    private String getResultForRemainingMines(int minMines, int remainingMines, List<Cell> reachableUnknowns, List<Cell> uncompletedFree, List<Cell> unreachableCells) {
-        List<List<Cell>> possibleMineLists = CombinationTest.getPossibleMineLists(uncompletedFree, reachableUnknowns, minMines, remainingMines);
-        int listCount = possibleMineLists.size();
-        List<Cell> longest = possibleMineLists.get(listCount - 1);
-        int maxMines = longest.size();
-        List<Cell> sureMines = CombinationTest.getSureMines(possibleMineLists, reachableUnknowns);
-        List<Cell> sureFree = CombinationTest.getSureFree(possibleMineLists, reachableUnknowns);
-        // no new information from possibleMineLists
+    private boolean getResultForRemainingMines(int minMines, int remainingMines, List<Cell> reachableUnknowns, List<FrontierComponent> components, List<Cell> unreachableCells) {
+        SolverEvents.Combinatorics event = new SolverEvents.Combinatorics();
+        event.begin();
+        long start = startTime();
+        // the total can't rule out any mine list if the frontier can be all mines and the unreachable cells can take
+        // any rest, then only sure cells are of interest unless a guess has to be weighed
+        boolean onlySureCells = !guessing && remainingMines >= reachableUnknowns.size() && minMines <= 0;
+        FrontierComponent.MineTotals totals = FrontierComponent.restrictToTotalMines(components, minMines, remainingMines,
+                frontierCache, onlySureCells, parallelMinCells);
+        List<Cell> sureMines = new ArrayList<>();
+        List<Cell> sureFree = new ArrayList<>();
+        if (totals.isPossible()) {
+            for (FrontierComponent component : components) {
+                sureMines.addAll(component.getSureMines());
+                sureFree.addAll(component.getSureFree());
+            }
+        }
+        if (metrics != null || event.shouldCommit()) {
+            long configurations = components.stream().mapToLong(FrontierComponent::getConfigurationCount).sum();
+            if (metrics != null) {
+                recordRule(SolverMetrics.Rule.COMBINATORICS, start, sureMines.size() + sureFree.size(), totals.isPossible());
+                metrics.recordFrontier(reachableUnknowns.size(), configurations);
+            }
+            event.frontierCells = reachableUnknowns.size();
+            event.components = components.size();
+            event.configurations = configurations;
+            event.resolvedCells = sureMines.size() + sureFree.size();
+            event.commit();
+        }
+        if (!totals.isPossible())
+            return false;
+        // no new information from the mine counts of the components
         if (sureMines.isEmpty() && sureFree.isEmpty()) {
-            return getResultDependingOnUnreachableCells(remainingMines, maxMines, unreachableCells);
+            return getResultDependingOnUnreachableCells(remainingMines, totals, components, unreachableCells);
         }
-        // add found fields and retry solving
+        // add found fields and go on solving
         else {
             addMines(sureMines);
             addEmptyFields(sureFree);
-            return solve();
+            return true;
         }
     }
 
-    private String getResultDependingOnUnreachableCells(int remainingMines, int maxMines, List<Cell> unreachableCells) {
-        // solution possible when all unreachable cells are mines. Set them and retry solving
-        if (!unreachableCells.isEmpty() && unreachableCells.size() + maxMines == remainingMines) {
+    private boolean getResultDependingOnUnreachableCells(int remainingMines, FrontierComponent.MineTotals totals, List<FrontierComponent> components, List<Cell> unreachableCells) {
+        // solution possible when all unreachable cells are mines. Set them and go on solving
+        if (!unreachableCells.isEmpty() && unreachableCells.size() + totals.max() == remainingMines) {
             addMines(unreachableCells);
-            return solve();
+            return true;
+        }
+        // the frontier needs all remaining mines, so no unreachable cell can hold one. Open them and go on solving
+        else if (!unreachableCells.isEmpty() && totals.min() == remainingMines) {
+            addEmptyFields(unreachableCells);
+            return true;
         }
-        else return "?";
+        // open the safest cell and go on solving
+        else if (guessing) {
+            guessCount++;
+            addEmptyFields(List.of(MineProbabilities.getSafestCell(components, unreachableCells, remainingMines)));
+            return true;
+        }
+        else return false;
     }
 
-    private void iterateCellChecking() {
-        boolean updated;
-        do {
-            updated = didCellUpdate();
+    /**
+     * Opens a cell with a number known from outside and checks the cells affected by it.
+     * @return cells newly found to be mines or free (not opened), only recorded without a game
+     */
+    List<Cell> reveal(int row, int col, int mines) {
+        Cell cell = cells[row][col];
+        if (board[indexOf(cell)] == BoardParser.MINE)
+            throw new IllegalArgumentException("Cell at row " + row + " and col " + col + " is a mine");
+        if (!cell.isFree()) {
+            uncompletedCells.set(indexOf(cell));
+            board[indexOf(cell)] = (byte) mines;
+            cell.setToFree(mines);
+            changedCells.set(indexOf(cell));
+            enqueueAffectedCells(cell);
         }
-        while (totalMines > foundMines.size() && updated);
+        return deduce();
     }
 
-    boolean didCellUpdate() {
-        boolean madeUpdate = false;
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[0].length; j++) {
-                if (board[i][j].equals("x") || board[i][j].equals("?"))
-                    continue;
-                Cell cell = cells[i][j];
-                if (uncompletedCells.contains(cell))
-                    madeUpdate = updatedSingleCell(cell, madeUpdate);
+    /**
+     * Marks a cell known from outside to be a mine and checks the cells affected by it.
+     * @return cells newly found to be mines or free (not opened), only recorded without a game
+     */
+    List<Cell> flag(int row, int col) {
+        Cell cell = cells[row][col];
+        if (board[indexOf(cell)] >= 0)
+            throw new IllegalArgumentException("Cell at row " + row + " and col " + col + " is open");
+        int id = indexOf(cell);
+        if (!uncompletedCells.get(id) && !foundMines.get(id))
+            throw new IllegalArgumentException("Cell at row " + row + " and col " + col + " is free");
+        addMines(List.of(cell));
+        return deduce();
+    }
+
+    /**
+     * Applies the single cell and subset rules to all pending cells, without the global combinatorics.
+     * @return cells newly found to be mines or free (not opened), only recorded without a game
+     */
+    List<Cell> deduce() {
+        newlyFound.clear();
+        iterateCellChecking();
+        // all mines found: every cell still unknown is free
+        if (totalMines == foundMineCount)
+            addEmptyFields(uncompletedCells.stream().mapToObj(this::cellOf).filter(cell -> !cell.isFree()).toList());
+        return new ArrayList<>(newlyFound);
+    }
+
+    private void iterateCellChecking() {
+        SolverEvents.CellChecking event = new SolverEvents.CellChecking();
+        event.begin();
+        int minesBefore = foundMineCount;
+        int checked = 0;
+        while (totalMines > foundMineCount && pendingCount > 0) {
+            int id = pendingCells[pendingHead];
+            pendingHead = (pendingHead + 1) % pendingCells.length;
+            pendingCount--;
+            pendingSet.clear(id);
+            if (uncompletedCells.get(id)) {
+                updatedSingleCell(cellOf(id));
+                checked++;
             }
         }
-        return madeUpdate;
+        event.cellsChecked = checked;
+        event.minesFound = foundMineCount - minesBefore;
+        event.commit();
     }
 
-    boolean updatedSingleCell(Cell cell, boolean updated) {
+    boolean updatedSingleCell(Cell cell) {
         // 1+2: all unknown neighbors are free cells / mines
-        if (cell.allUnknownAreFree() || cell.allUnknownAreMines()) {
+        int unknowns = cell.getUnknownCount();
+        long start = startTime();
+        boolean allFree = cell.allUnknownAreFree();
+        recordRule(SolverMetrics.Rule.ALL_FREE, start, allFree ? unknowns : 0, allFree);
+        boolean allMines = false;
+        if (!allFree) {
+            start = startTime();
+            allMines = cell.allUnknownAreMines();
+            recordRule(SolverMetrics.Rule.ALL_MINES, start, allMines ? unknowns : 0, allMines);
+        }
+        if (allFree || allMines) {
+            uncompletedCells.clear(indexOf(cell));
             addEmptyFields(cell.getEmptyFieldsList());
             addMines(cell.getMinesList());
-            uncompletedCells.remove(cell);
             return true;
         }
         // 3: some empty fields identified
+        start = startTime();
         List<Cell> list = cell.foundNewFreesFromSubset();
+        recordRule(SolverMetrics.Rule.FREES_FROM_SUBSET, start, list.size(), !list.isEmpty());
         if (!list.isEmpty()) {
             addEmptyFields(list);
             return true;
         }
         // 4: some mines identified
+        start = startTime();
         list = cell.foundNewMinesFromSubset();
+        recordRule(SolverMetrics.Rule.MINES_FROM_SUBSET, start, list.size(), !list.isEmpty());
         if (!list.isEmpty()) {
             addMines(list);
             return true;
         }
         // 5: no updates on this cell
-        return updated;
+        return false;
+    }
+
+    private long startTime() {
+        return metrics == null ? 0L : System.nanoTime();
+    }
+
+    private void recordRule(SolverMetrics.Rule rule, long start, int resolved, boolean success) {
+        if (metrics != null)
+            metrics.recordRule(rule, resolved, success, System.nanoTime() - start);
+    }
+
+    private boolean changedAround(Cell cell) {
+        for (int i = Math.max(cell.getRow() - 1, 0); i <= Math.min(cell.getRow() + 1, rows - 1); i++) {
+            int from = i * cols + Math.max(cell.getCol() - 1, 0);
+            int to = i * cols + Math.min(cell.getCol() + 1, cols - 1);
+            int next = changedCells.nextSetBit(from);
+            if (next >= 0 && next <= to) return true;
+        }
+        return false;
+    }
+
+    private void enqueue(Cell cell) {
+        int id = indexOf(cell);
+        if (!pendingSet.get(id)) {
+            pendingSet.set(id);
+            pendingCells[(pendingHead + pendingCount++) % pendingCells.length] = id;
+        }
+    }
+
+    private void enqueueAffectedCells(Cell changed) {
+        int lastRow = Math.min(changed.getRow() + AFFECTED_DISTANCE, rows - 1);
+        int lastCol = Math.min(changed.getCol() + AFFECTED_DISTANCE, cols - 1);
+        for (int i = Math.max(changed.getRow() - AFFECTED_DISTANCE, 0); i <= lastRow; i++) {
+            for (int j = Math.max(changed.getCol() - AFFECTED_DISTANCE, 0); j <= lastCol; j++) {
+                Cell cell = cells[i][j];
+                if (cell.isFree() && uncompletedCells.get(i * cols + j))
+                    enqueue(cell);
+            }
+        }
     }
 
     private void addMines(List<Cell> list) {
         for (Cell found : list) {
-            uncompletedCells.remove(found);
-            board[found.getRow()][found.getCol()] = "x";
+            int id = indexOf(found);
+            uncompletedCells.clear(id);
+            boolean changed = board[id] != BoardParser.MINE;
+            board[id] = BoardParser.MINE;
             found.setToMine();
-            foundMines.add(found);
+            if (!foundMines.get(id)) {
+                foundMines.set(id);
+                foundMineCount++;
+            }
+            if (changed) {
+                changedCells.set(id);
+                enqueueAffectedCells(found);
+                if (game == null) newlyFound.add(found);
+            }
         }
     }
 
     private void addEmptyFields(List<Cell> list) {
         for (Cell found : list) {
-            if (uncompletedCells.contains(found)) {
-                int mines = Game.open(found.getRow(), found.getCol());
-                board[found.getRow()][found.getCol()] = "" + mines;
+            int id = indexOf(found);
+            if (uncompletedCells.get(id) && !found.isFree() && game == null) {
+                // can't be opened, so it is completed for the solver and only its neighbours learn it is free
+                uncompletedCells.clear(id);
+                found.declareCellFreeForNeighbors(found);
+                changedCells.set(id);
+                enqueueAffectedCells(found);
+                newlyFound.add(found);
+            }
+            else if (uncompletedCells.get(id) && !found.isFree()) {
+                int mines = game.open(found.getRow(), found.getCol());
+                board[id] = (byte) mines;
                 found.setToFree(mines);
+                changedCells.set(id);
+                enqueueAffectedCells(found);
             }
         }
     }
 
     String getBoardString() {
-        return Arrays.stream(board)
-                .map(line -> String.join(" ", line))
-                .collect(Collectors.joining("\n"));
+        return new ParsedBoard(rows, cols, board).toString();
+    }
+
+    private int indexOf(Cell cell) {
+        return cell.getRow() * cols + cell.getCol();
+    }
+
+    private Cell cellOf(int id) {
+        return cells[id / cols][id % cols];
     }
 
     private void addNeighbourDataToCell(int i, int j) {
         List<Cell> neighbours = getNeighbourCellsOf(i, j);
         for (Cell neighbour : neighbours) {
-            switch(board[neighbour.getRow()][neighbour.getCol()]){
-                case "x": cells[i][j].addMineNeighbour(neighbour); break;
-                case "?": cells[i][j].addUnknownNeighbour(neighbour); break;
+            switch(board[indexOf(neighbour)]){
+                case BoardParser.MINE: cells[i][j].addMineNeighbour(neighbour); break;
+                case BoardParser.UNKNOWN: cells[i][j].addUnknownNeighbour(neighbour); break;
                 default:  cells[i][j].addFreeNeighbour(neighbour); break;
             }
         }
@@ -174,7 +474,7 @@ class MineSweeper {
         int[][] indices = {{row-1, col-1}, {row-1, col}, {row-1, col+1}, {row, col-1}, {row, col+1},
                 {row+1, col-1}, {row+1, col}, {row+1, col+1}};
         for (int[] index : indices) {
-            if (index[0] >= 0 && index[0] < board.length && index[1] >= 0 && index[1] < board[0].length) {
+            if (index[0] >= 0 && index[0] < rows && index[1] >= 0 && index[1] < cols) {
                 neighbors.add(cells[index[0]][index[1]]);
             }
         }
@@ -182,8 +482,8 @@ class MineSweeper {
     }
 
     private void openAllUncompletedFields() {
-        for (Cell cell : uncompletedCells) {
-            board[cell.getRow()][cell.getCol()] = "" + Game.open(cell.getRow(), cell.getCol());
+        for (int id = uncompletedCells.nextSetBit(0); id >= 0; id = uncompletedCells.nextSetBit(id + 1)) {
+            board[id] = (byte) game.open(id / cols, id % cols);
         }
     }
 
@@ -0,0 +1,97 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Solves many boards in parallel, every board with its own game.
+ * Boards are only taken from the input while the results are consumed, at most maxInFlight of them
+ * are solved or waiting to be taken at a time, so the input can be larger than the heap or endless.
+ */
+public class MineSweeperBatch {
+    private final Executor executor;
+    private final int maxInFlight;
+
+    public MineSweeperBatch() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public MineSweeperBatch(Executor executor) {
+        this(executor, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public MineSweeperBatch(Executor executor, int maxInFlight) {
+        if (maxInFlight <= 0)
+            throw new IllegalArgumentException("At least one board must be in flight, was " + maxInFlight);
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static Stream<BoardResult> solveAll(Stream<BoardSpec> boards, Executor executor) {
+        return new MineSweeperBatch(executor).solve(boards);
+    }
+
+    public static Stream<BoardResult> solveAll(Stream<BoardSpec> boards) {
+        return new MineSweeperBatch().solve(boards);
+    }
+
+    /**
+     * Returns the results of the boards in the order they are finished. Boards are handed to the executor
+     * lazily while the returned stream is consumed, which blocks until the next result is available.
+     * Every board gives a result, a failure of its solver or game included.
+     */
+    public Stream<BoardResult> solve(Stream<BoardSpec> boards) {
+        Iterator<BoardSpec> input = boards.iterator();
+        BlockingQueue<BoardResult> finished = new LinkedBlockingQueue<>();
+        Iterator<BoardResult> results = new Iterator<>() {
+            private int inFlight = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (inFlight < maxInFlight && input.hasNext()) {
+                    BoardSpec board = input.next();
+                    executor.execute(() -> finished.add(solveBoard(board)));
+                    inFlight++;
+                }
+                return inFlight > 0;
+            }
+
+            @Override
+            public BoardResult next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                BoardResult result = takeNext(finished);
+                inFlight--;
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.NONNULL), false)
+                .onClose(boards::close);
+    }
+
+    private static BoardResult solveBoard(BoardSpec board) {
+        long start = System.nanoTime();
+        try {
+            String solution = new MineSweeper(board.map(), board.mines(), board.game()).solve();
+            return new BoardResult(board, solution, null, System.nanoTime() - start);
+        } catch (Throwable e) {
+            // also errors, otherwise the board would never be finished and the results would wait for it forever
+            return new BoardResult(board, null, e, System.nanoTime() - start);
+        }
+    }
+
+    private static BoardResult takeNext(BlockingQueue<BoardResult> finished) {
+        try {
+            return finished.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the next board", e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.List;
+
+/**
+ * Keeps the solver state of a game played by someone else and tells after every click
+ * which cells have become deducible. Only the cells around the click are checked again,
+ * the global combinatorics of solve() are not used.
+ */
+public class MineSweeperSession {
+
+    public record Hint(int row, int col, boolean mine) {
+    }
+
+    private final MineSweeper mineSweeper;
+
+    public MineSweeperSession(String map, int nMines) {
+        mineSweeper = new MineSweeper(BoardParser.parse(map), nMines, null);
+    }
+
+    /**
+     * @return all cells deducible from the map given to the constructor
+     */
+    public List<Hint> start() {
+        return toHints(mineSweeper.deduce());
+    }
+
+    /**
+     * The user opened a cell showing the given number of mines around it.
+     * @return cells that have become deducible by this
+     */
+    public List<Hint> reveal(int row, int col, int mines) {
+        return toHints(mineSweeper.reveal(row, col, mines));
+    }
+
+    /**
+     * The user flagged a cell as mine.
+     * @return cells that have become deducible by this
+     */
+    public List<Hint> flag(int row, int col) {
+        return toHints(mineSweeper.flag(row, col));
+    }
+
+    private static List<Hint> toHints(List<Cell> found) {
+        return found.stream()
+                .map(cell -> new Hint(cell.getRow(), cell.getCol(), cell.isMine()))
+                .toList();
+    }
+}
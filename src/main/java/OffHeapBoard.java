@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.IntConsumer;
+
+/**
+ * Board state outside the heap, for maps with millions of cells. Cells are identified by row * cols + col.
+ * One byte per cell holds the same content as ParsedBoard, two more bytes the number of unknown and of mine neighbours,
+ * which are kept up to date when a cell is set to a mine or free. Only a few fields are on the heap, whatever the size.
+ */
+public class OffHeapBoard {
+    private static final int COUNTERS = 2;
+    private static final int UNKNOWN_COUNTER = 0;
+    private static final int MINE_COUNTER = 1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final int rows;
+    private final int cols;
+    private final ByteBuffer cells;
+    private final ByteBuffer counters;
+
+    /**
+     * @param cells direct buffer with one byte per cell from its position on, as in ParsedBoard
+     */
+    OffHeapBoard(int rows, int cols, ByteBuffer cells) {
+        if ((long) rows * cols * COUNTERS > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Board of " + rows + " x " + cols + " cells is too large for the neighbour counters");
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = cells.slice(cells.position(), rows * cols);
+        counters = ByteBuffer.allocateDirect(rows * cols * COUNTERS);
+        for (int id = 0; id < rows * cols; id++) {
+            byte cell = this.cells.get(id);
+            if (cell == BoardParser.UNKNOWN || cell == BoardParser.MINE)
+                forEachNeighbour(id, neighbour -> increment(neighbour, cell == BoardParser.MINE ? MINE_COUNTER : UNKNOWN_COUNTER, 1));
+        }
+    }
+
+    public static OffHeapBoard of(ParsedBoard board) {
+        ByteBuffer cells = ByteBuffer.allocateDirect(board.cells().length).put(board.cells()).flip();
+        return new OffHeapBoard(board.rows(), board.cols(), cells);
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int size() {
+        return rows * cols;
+    }
+
+    public byte get(int id) {
+        return cells.get(id);
+    }
+
+    public boolean isFree(int id) {
+        return cells.get(id) >= 0;
+    }
+
+    public int getUnknownNeighbours(int id) {
+        return counters.get(id * COUNTERS + UNKNOWN_COUNTER);
+    }
+
+    public int getMineNeighbours(int id) {
+        return counters.get(id * COUNTERS + MINE_COUNTER);
+    }
+
+    /**
+     * @return mines around a free cell that are not found yet
+     */
+    public int getMissingMines(int id) {
+        return cells.get(id) - getMineNeighbours(id);
+    }
+
+    /**
+     * @return true if the cell was unknown before
+     */
+    public boolean setMine(int id) {
+        if (cells.get(id) != BoardParser.UNKNOWN)
+            return false;
+        cells.put(id, BoardParser.MINE);
+        forEachNeighbour(id, neighbour -> {
+            increment(neighbour, UNKNOWN_COUNTER, -1);
+            increment(neighbour, MINE_COUNTER, 1);
+        });
+        return true;
+    }
+
+    /**
+     * @return true if the cell was unknown before
+     */
+    public boolean setFree(int id, int mines) {
+        if (cells.get(id) != BoardParser.UNKNOWN)
+            return false;
+        cells.put(id, (byte) mines);
+        forEachNeighbour(id, neighbour -> increment(neighbour, UNKNOWN_COUNTER, -1));
+        return true;
+    }
+
+    /**
+     * Unknown neighbours of a cell as bits of a 7x7 frame centred on the cell at centre
+     * (bit (dr + 3) * 7 + (dc + 3) for the offset dr, dc from it), like the masks in Cell.
+     */
+    public long unknownMask(int id, int centre) {
+        int row = id / cols;
+        int col = id % cols;
+        int shift = (row - centre / cols) * 7 + col - centre % cols;
+        long mask = 0L;
+        for (int i = Math.max(row - 1, 0); i <= Math.min(row + 1, rows - 1); i++) {
+            for (int j = Math.max(col - 1, 0); j <= Math.min(col + 1, cols - 1); j++) {
+                if (cells.get(i * cols + j) == BoardParser.UNKNOWN)
+                    mask |= 1L << ((i - row + 3) * 7 + j - col + 3 + shift);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return id of the cell at a bit of a frame as in unknownMask
+     */
+    public int idAt(int centre, int bit) {
+        return centre + (bit / 7 - 3) * cols + bit % 7 - 3;
+    }
+
+    public void forEachNeighbour(int id, IntConsumer action) {
+        int row = id / cols;
+        int col = id % cols;
+        for (int i = Math.max(row - 1, 0); i <= Math.min(row + 1, rows - 1); i++) {
+            for (int j = Math.max(col - 1, 0); j <= Math.min(col + 1, cols - 1); j++) {
+                if (i != row || j != col) action.accept(i * cols + j);
+            }
+        }
+    }
+
+    private void increment(int id, int counter, int by) {
+        int index = id * COUNTERS + counter;
+        counters.put(index, (byte) (counters.get(index) + by));
+    }
+
+    /**
+     * Writes the map in the format of toString through a small direct buffer, so large maps need no heap.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        for (int i = 0; i < size(); i++) {
+            if (out.remaining() < 2)
+                drain(out, channel);
+            if (i > 0)
+                out.put((byte) (i % cols == 0 ? '\n' : ' '));
+            out.put((byte) BoardParser.toChar(cells.get(i)));
+        }
+        drain(out, channel);
+    }
+
+    private static void drain(ByteBuffer out, WritableByteChannel channel) throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * The map as one String on the heap, for small boards and tests.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(size() * 2);
+        for (int i = 0; i < size(); i++) {
+            if (i > 0)
+                builder.append(i % cols == 0 ? '\n' : ' ');
+            builder.append(BoardParser.toChar(cells.get(i)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Solver on an OffHeapBoard for maps too large for the Cell objects of MineSweeper: the pending cells are
+ * a ring buffer of ids in a direct buffer as well, so the heap needed doesn't grow with the board.
+ * It applies the rules of MineSweeper that only look at a cell and its neighbourhood (all unknowns free or mines,
+ * subsets with one or two free cells up to two cells away) but doesn't enumerate the frontier;
+ * boards that need that end with "?". The solution is written to a file by solve(Path), solve() returns it
+ * as a String on the heap and is only meant for small boards.
+ */
+class OffHeapMineSweeper {
+    // a change of a cell can alter the rules of free cells up to this distance, as in MineSweeper
+    private static final int AFFECTED_DISTANCE = 3;
+
+    private final OffHeapBoard board;
+    private final int totalMines;
+    private final MineOracle game;
+    private final IntBuffer pendingCells;
+    private final ByteBuffer pendingSet;
+    // unknowns and missing mines of the free cells up to two cells away sharing some but not all unknowns
+    // with the checked cell
+    private final long[] partnerUnknowns = new long[24];
+    private final int[] partnerMissing = new int[24];
+    private int pendingHead = 0;
+    private int pendingCount = 0;
+    private int foundMines = 0;
+    private int unknownCells = 0;
+
+    public OffHeapMineSweeper(OffHeapBoard board, int nMines, MineOracle game) {
+        if ((long) board.size() * Integer.BYTES > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Board of " + board.size() + " cells is too large for the queue of pending cells");
+        this.board = board;
+        this.totalMines = nMines;
+        this.game = game;
+        pendingCells = ByteBuffer.allocateDirect(board.size() * Integer.BYTES).asIntBuffer();
+        pendingSet = ByteBuffer.allocateDirect(board.size());
+        for (int id = 0; id < board.size(); id++) {
+            if (board.get(id) == BoardParser.MINE) foundMines++;
+            else if (board.get(id) == BoardParser.UNKNOWN) unknownCells++;
+            else enqueue(id);
+        }
+    }
+
+    public static OffHeapMineSweeper fromFile(Path file, int nMines, MineOracle game) {
+        return new OffHeapMineSweeper(BoardParser.parseOffHeap(file), nMines, game);
+    }
+
+    /**
+     * @return the solved map, "?" if the local rules are not enough
+     */
+    public String solve() {
+        return solveCells() ? board.toString() : "?";
+    }
+
+    /**
+     * Writes the solved map to solution, "?" if the local rules are not enough.
+     * @return true if the board was solved
+     */
+    public boolean solve(Path solution) {
+        boolean solved = solveCells();
+        try (FileChannel channel = FileChannel.open(solution, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (solved) board.writeTo(channel);
+            else channel.write(ByteBuffer.wrap(new byte[]{'?'}));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return solved;
+    }
+
+    public OffHeapBoard getBoard() {
+        return board;
+    }
+
+    private boolean solveCells() {
+        while (totalMines > foundMines && pendingCount > 0) {
+            int id = pendingCells.get(pendingHead);
+            pendingHead = (pendingHead + 1) % board.size();
+            pendingCount--;
+            pendingSet.put(id, (byte) 0);
+            if (board.isFree(id) && board.getUnknownNeighbours(id) > 0)
+                updatedSingleCell(id);
+        }
+        // all mines found: every cell still unknown is free, or all unknown cells are mines
+        if (totalMines == foundMines || totalMines - foundMines == unknownCells) {
+            boolean mines = totalMines > foundMines;
+            for (int id = 0; id < board.size(); id++) {
+                if (board.get(id) != BoardParser.UNKNOWN) continue;
+                if (mines) addMine(id);
+                else addEmptyField(id);
+            }
+        }
+        return totalMines == foundMines;
+    }
+
+    private boolean updatedSingleCell(int id) {
+        int missing = board.getMissingMines(id);
+        long unknowns = board.unknownMask(id, id);
+        // 1+2: all unknown neighbors are free cells / mines
+        if (missing == 0) {
+            addEmptyFields(id, unknowns);
+            return true;
+        }
+        if (missing == Long.bitCount(unknowns)) {
+            addMines(id, unknowns);
+            return true;
+        }
+        // 3+4: the unknowns not shared with another free cell are all free / all mines
+        int rows = board.rows();
+        int cols = board.cols();
+        int row = id / cols;
+        int col = id % cols;
+        int partnerCount = 0;
+        for (int i = Math.max(row - 2, 0); i <= Math.min(row + 2, rows - 1); i++) {
+            for (int j = Math.max(col - 2, 0); j <= Math.min(col + 2, cols - 1); j++) {
+                int other = i * cols + j;
+                if (other == id || !board.isFree(other) || board.getUnknownNeighbours(other) == 0)
+                    continue;
+                long otherUnknowns = board.unknownMask(other, id);
+                if ((unknowns & otherUnknowns) == 0L || (unknowns & ~otherUnknowns) == 0L)
+                    continue;
+                int otherMissing = board.getMissingMines(other);
+                partnerUnknowns[partnerCount] = otherUnknowns;
+                partnerMissing[partnerCount++] = otherMissing;
+                long found = SubsetRules.fromSubset(unknowns, missing, otherUnknowns, otherMissing, false);
+                if (found != 0L) {
+                    addEmptyFields(id, found);
+                    return true;
+                }
+                found = SubsetRules.fromSubset(unknowns, missing, otherUnknowns, otherMissing, true);
+                if (found != 0L) {
+                    addMines(id, found);
+                    return true;
+                }
+            }
+        }
+        // two free cells with disjoint unknowns: the unknowns in none of them are all mines / all free
+        for (int first = 0; first < partnerCount; first++) {
+            for (int second = first + 1; second < partnerCount; second++) {
+                long found = SubsetRules.fromTwoSubsets(unknowns, missing, partnerUnknowns[first], partnerMissing[first],
+                        partnerUnknowns[second], partnerMissing[second], true);
+                if (found != 0L) {
+                    addMines(id, found);
+                    return true;
+                }
+                found = SubsetRules.fromTwoSubsets(unknowns, missing, partnerUnknowns[first], partnerMissing[first],
+                        partnerUnknowns[second], partnerMissing[second], false);
+                if (found != 0L) {
+                    addEmptyFields(id, found);
+                    return true;
+                }
+            }
+        }
+        // 5: no updates on this cell
+        return false;
+    }
+
+    private void addMines(int centre, long mask) {
+        for (; mask != 0L; mask &= mask - 1)
+            addMine(board.idAt(centre, Long.numberOfTrailingZeros(mask)));
+    }
+
+    private void addEmptyFields(int centre, long mask) {
+        for (; mask != 0L; mask &= mask - 1)
+            addEmptyField(board.idAt(centre, Long.numberOfTrailingZeros(mask)));
+    }
+
+    private void addMine(int id) {
+        if (board.setMine(id)) {
+            foundMines++;
+            unknownCells--;
+            enqueueAffectedCells(id);
+        }
+    }
+
+    private void addEmptyField(int id) {
+        int cols = board.cols();
+        if (board.get(id) == BoardParser.UNKNOWN && board.setFree(id, game.open(id / cols, id % cols))) {
+            unknownCells--;
+            enqueueAffectedCells(id);
+        }
+    }
+
+    private void enqueue(int id) {
+        if (pendingSet.get(id) == 0) {
+            pendingSet.put(id, (byte) 1);
+            pendingCells.put((pendingHead + pendingCount++) % board.size(), id);
+        }
+    }
+
+    private void enqueueAffectedCells(int changed) {
+        int rows = board.rows();
+        int cols = board.cols();
+        int row = changed / cols;
+        int col = changed % cols;
+        for (int i = Math.max(row - AFFECTED_DISTANCE, 0); i <= Math.min(row + AFFECTED_DISTANCE, rows - 1); i++) {
+            for (int j = Math.max(col - AFFECTED_DISTANCE, 0); j <= Math.min(col + AFFECTED_DISTANCE, cols - 1); j++) {
+                int id = i * cols + j;
+                if (board.isFree(id) && board.getUnknownNeighbours(id) > 0)
+                    enqueue(id);
+            }
+        }
+    }
+}
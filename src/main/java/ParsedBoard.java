@@ -0,0 +1,21 @@
+/**
+ * A map as one byte per cell in row-major order: the number of mines around a free cell,
+ * BoardParser.UNKNOWN or BoardParser.MINE.
+ */
+public record ParsedBoard(int rows, int cols, byte[] cells) {
+
+    public byte get(int row, int col) {
+        return cells[row * cols + col];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(rows * cols * 2);
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0)
+                builder.append(i % cols == 0 ? '\n' : ' ');
+            builder.append(BoardParser.toChar(cells[i]));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,62 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder events of the solver phases, e.g. for -XX:StartFlightRecording.
+ * They are only committed while a recording with these events enabled is running.
+ */
+final class SolverEvents {
+
+    private SolverEvents() {
+    }
+
+    @Name("minesweeper.BoardConstruction")
+    @Label("Board Construction")
+    @Category("Minesweeper")
+    static class BoardConstruction extends Event {
+        @Label("Rows")
+        int rows;
+        @Label("Cols")
+        int cols;
+    }
+
+    @Name("minesweeper.CellChecking")
+    @Label("Cell Checking Pass")
+    @Category("Minesweeper")
+    @Description("Applying the single cell and subset rules until no cell is pending")
+    static class CellChecking extends Event {
+        @Label("Cells Checked")
+        int cellsChecked;
+        @Label("Mines Found")
+        int minesFound;
+    }
+
+    @Name("minesweeper.Combinatorics")
+    @Label("Combinatorial Step")
+    @Category("Minesweeper")
+    @Description("Counting the mine lists of the frontier components")
+    static class Combinatorics extends Event {
+        @Label("Frontier Cells")
+        int frontierCells;
+        @Label("Components")
+        int components;
+        @Label("Configurations")
+        long configurations;
+        @Label("Resolved Cells")
+        int resolvedCells;
+    }
+
+    @Name("minesweeper.Solve")
+    @Label("Solve")
+    @Category("Minesweeper")
+    @Description("One round of solve(): cell checking followed by a combinatorial step if mines are left")
+    static class Solve extends Event {
+        @Label("Round")
+        int round;
+        @Label("Found Mines")
+        int foundMines;
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often each deduction rule of the solver is tried, how often it finds something,
+ * how many cells it resolves and how long it takes. Can be shared by solvers running in parallel.
+ */
+public class SolverMetrics {
+
+    public enum Rule {
+        ALL_FREE,
+        ALL_MINES,
+        FREES_FROM_SUBSET,
+        MINES_FROM_SUBSET,
+        LINEAR_REDUCTION,
+        COMBINATORICS
+    }
+
+    public record RuleSnapshot(long invocations, long successes, long cellsResolved, long nanos) {
+    }
+
+    public record Snapshot(Map<Rule, RuleSnapshot> rules, long frontierCells, long maxFrontierCells, long configurations) {
+    }
+
+    private final LongAdder[] invocations = newAdders();
+    private final LongAdder[] successes = newAdders();
+    private final LongAdder[] cellsResolved = newAdders();
+    private final LongAdder[] nanos = newAdders();
+    private final LongAdder frontierCells = new LongAdder();
+    private final LongAccumulator maxFrontierCells = new LongAccumulator(Math::max, 0);
+    private final LongAdder configurations = new LongAdder();
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[Rule.values().length];
+        for (int i = 0; i < adders.length; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    public void recordRule(Rule rule, int resolved, boolean success, long elapsedNanos) {
+        invocations[rule.ordinal()].increment();
+        if (success) successes[rule.ordinal()].increment();
+        cellsResolved[rule.ordinal()].add(resolved);
+        nanos[rule.ordinal()].add(elapsedNanos);
+    }
+
+    /**
+     * Records the size of the frontier and the number of valid mine lists of one combinatorial step.
+     */
+    public void recordFrontier(int cells, long validConfigurations) {
+        frontierCells.add(cells);
+        maxFrontierCells.accumulate(cells);
+        configurations.add(validConfigurations);
+    }
+
+    public Snapshot snapshot() {
+        Map<Rule, RuleSnapshot> rules = new EnumMap<>(Rule.class);
+        for (Rule rule : Rule.values()) {
+            int i = rule.ordinal();
+            rules.put(rule, new RuleSnapshot(invocations[i].sum(), successes[i].sum(), cellsResolved[i].sum(), nanos[i].sum()));
+        }
+        return new Snapshot(rules, frontierCells.sum(), maxFrontierCells.get(), configurations.sum());
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Arithmetic of the subset rules, shared by Cell and OffHeapMineSweeper. The unknown neighbours of the cells
+ * are bit masks in one common frame, missing is the number of mines still missing around a cell.
+ */
+public class SubsetRules {
+
+    /**
+     * A free cell other shares some unknowns with the checked cell: at most so many of its mines resp. free cells
+     * can be in the common unknowns, the rest has to be in the uncommon ones.
+     * @return mask of the uncommon unknowns of the checked cell if they must all be mines resp. free, 0 if not
+     */
+    public static long fromSubset(long unknowns, int missing, long otherUnknowns, int otherMissing, boolean searchingMine) {
+        long uncommon = unknowns & ~otherUnknowns;
+        if (uncommon == 0L)
+            return 0L;
+        int difference = searchingMine
+                ? missing - maxCommonMines(unknowns, missing, otherUnknowns, otherMissing)
+                : free(unknowns, missing) - maxCommonFree(unknowns, missing, otherUnknowns, otherMissing);
+        return Long.bitCount(uncommon) == difference ? uncommon : 0L;
+    }
+
+    /**
+     * Two free cells with disjoint unknowns, both sharing some with the checked cell.
+     * @return mask of the unknowns of the checked cell in none of them if they must all be mines resp. free, 0 if not
+     */
+    public static long fromTwoSubsets(long unknowns, int missing, long unknowns1, int missing1, long unknowns2,
+                                      int missing2, boolean searchingMine) {
+        if ((unknowns1 & unknowns2) != 0L)
+            return 0L;
+        long inNone = unknowns & ~unknowns1 & ~unknowns2;
+        if (inNone == 0L)
+            return 0L;
+        int difference = searchingMine
+                ? missing - maxCommonMines(unknowns, missing, unknowns1, missing1)
+                        - maxCommonMines(unknowns, missing, unknowns2, missing2)
+                : free(unknowns, missing) - maxCommonFree(unknowns, missing, unknowns1, missing1)
+                        - maxCommonFree(unknowns, missing, unknowns2, missing2);
+        return Long.bitCount(inNone) == difference ? inNone : 0L;
+    }
+
+    private static int maxCommonMines(long unknowns, int missing, long otherUnknowns, int otherMissing) {
+        return Math.min(Math.min(missing, otherMissing), Long.bitCount(unknowns & otherUnknowns));
+    }
+
+    private static int maxCommonFree(long unknowns, int missing, long otherUnknowns, int otherMissing) {
+        return Math.min(Math.min(free(unknowns, missing), free(otherUnknowns, otherMissing)),
+                Long.bitCount(unknowns & otherUnknowns));
+    }
+
+    private static int free(long unknowns, int missing) {
+        return Long.bitCount(unknowns) - missing;
+    }
+}
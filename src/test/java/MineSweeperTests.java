@@ -1,4 +1,15 @@
 import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import static org.junit.Assert.*;
 
 public class MineSweeperTests {
@@ -1428,9 +1439,9 @@ public class MineSweeperTests {
     @Test
     public void sampleTests() {
         for (String[] datum : DATA) {
-            Game.newGame(datum[1]);
-            Game.read(datum[2]);
-            makeAssertion_AndDisplay(datum[0], datum[3], new MineSweeper(datum[2], Game.getMinesN()).solve());
+            Game game = new Game(datum[1], GameEventSink.console(GameEventSink.Level.INFO));
+            game.read(datum[2]);
+            makeAssertion_AndDisplay(datum[0], datum[3], new MineSweeper(datum[2], game.getMinesN(), game).solve());
         }
     }
 
@@ -1441,8 +1452,435 @@ public class MineSweeperTests {
             hitMine1, hitMine2, hitMine3, hitMine4, hitMine5,
             notFound1, notFound2, notFound3,
             unexpectedSolution1, unexpectedSolution2, unexpectedSolution3, unexpectedSolution4, unexpectedSolution5, unexpectedSolution6,*/
-        Game.newGame(testCase[1]);
-        Game.read(testCase[2]);
-        makeAssertion_AndDisplay(testCase[0], testCase[3], new MineSweeper(testCase[2], Game.getMinesN()).solve());
+        Game game = new Game(testCase[1], GameEventSink.console(GameEventSink.Level.INFO));
+        game.read(testCase[2]);
+        makeAssertion_AndDisplay(testCase[0], testCase[3], new MineSweeper(testCase[2], game.getMinesN(), game).solve());
+    }
+
+    @Test
+    public void guessingOpensSafestCell() {
+        Game game = new Game("0 0 0\n0 1 1\n0 1 x");
+        MineSweeper mineSweeper = new MineSweeper("? ? ?\n? ? ?\n? ? ?", game.getMinesN(), game);
+        mineSweeper.setGuessing(true);
+        makeAssertion_AndDisplay("Guessing on a covered map", "0 0 0\n0 1 1\n0 1 x", mineSweeper.solve());
+        assertEquals(1, mineSweeper.getGuessCount());
+    }
+
+    @Test
+    public void guessingOpensSafestFrontierCell() {
+        // (0,1) or (1,1) alone takes one mine, (1,0) and (1,2) together two, so with 2 mines left
+        // the lists with one mine have three times the placements on the unreachable row
+        Game game = new Game("1 x 1\n1 2 2\n0 1 x");
+        List<String> opened = new ArrayList<>();
+        MineOracle recording = (row, col) -> {
+            opened.add(row + "," + col);
+            return game.open(row, col);
+        };
+        MineSweeper mineSweeper = new MineSweeper("1 ? 1\n? ? ?\n? ? ?", game.getMinesN(), recording);
+        mineSweeper.setGuessing(true);
+        assertEquals("1 x 1\n1 2 2\n0 1 x", mineSweeper.solve());
+        assertEquals(1, mineSweeper.getGuessCount());
+        assertEquals("1,0", opened.get(0));
+    }
+
+    @Test
+    public void mineProbabilitiesCountEveryPlacement() {
+        Cell[][] grid = cellsOf("1 ? 1\n? ? ?\n? ? ?");
+        List<Cell> reachableUnknowns = List.of(grid[0][1], grid[1][0], grid[1][1], grid[1][2]);
+        List<Cell> unreachableCells = Arrays.asList(grid[2]);
+        List<FrontierComponent> components = FrontierComponent.split(reachableUnknowns, List.of(grid[0][0], grid[0][2]));
+        FrontierComponent.restrictToTotalMines(components, 2 - unreachableCells.size(), 2, null, false, Integer.MAX_VALUE);
+        Map<Cell, Double> probabilities = MineProbabilities.getMineProbabilities(components, unreachableCells, 2);
+        // a probability for each of the 4 frontier and 3 unreachable cells
+        assertEquals(7, probabilities.size());
+        // 7 placements: 2 frontier lists with one mine times 3 on the unreachable cells, 1 list with two mines
+        assertEquals(3.0 / 7, probabilities.get(grid[0][1]), 1e-12);
+        assertEquals(3.0 / 7, probabilities.get(grid[1][1]), 1e-12);
+        assertEquals(1.0 / 7, probabilities.get(grid[1][0]), 1e-12);
+        assertEquals(1.0 / 7, probabilities.get(grid[1][2]), 1e-12);
+        for (Cell cell : unreachableCells)
+            assertEquals(2.0 / 7, probabilities.get(cell), 1e-12);
+        assertSame(grid[1][0], MineProbabilities.getSafestCell(components, unreachableCells, 2));
+    }
+
+    @Test
+    public void unchangedComponentsAreReused() {
+        Cell[][] grid = cellsOf("1 ? 1\n? ? ?\n? ? ?");
+        List<Cell> reachableUnknowns = List.of(grid[0][1], grid[1][0], grid[1][1], grid[1][2]);
+        List<Cell> free = List.of(grid[0][0], grid[0][2]);
+        List<FrontierComponent> previous = FrontierComponent.split(reachableUnknowns, free);
+        List<FrontierComponent> again = FrontierComponent.split(reachableUnknowns, free);
+        assertSame(previous.get(0), FrontierComponent.reuseUnchanged(again, previous, cell -> false).get(0));
+        assertSame(again.get(0), FrontierComponent.reuseUnchanged(again, previous, cell -> cell == grid[1][2]).get(0));
+    }
+
+    @Test
+    public void solvesGamesConcurrently() {
+        Arrays.stream(DATA).parallel().forEach(datum -> {
+            Game game = new Game(datum[1]);
+            assertEquals(datum[0], datum[3].trim(), new MineSweeper(datum[2], game.getMinesN(), game).solve());
+        });
+    }
+
+    @Test
+    public void batchSolvesAllBoards() {
+        Map<String, String> expected = new HashMap<>();
+        Stream<BoardSpec> boards = Arrays.stream(DATA).map(datum -> {
+            expected.put(datum[0], datum[3].trim());
+            Game game = new Game(datum[1]);
+            return new BoardSpec(datum[0], datum[2], game.getMinesN(), game);
+        });
+        List<BoardResult> results = MineSweeperBatch.solveAll(boards).toList();
+        assertEquals(DATA.length, results.size());
+        results.forEach(result -> assertEquals(result.board().name(), expected.get(result.board().name()), result.solution()));
+    }
+
+    @Test
+    public void batchReportsErrorsOfGames() {
+        String[] testCase = tooFewMines1;
+        MineOracle failing = (row, col) -> {
+            throw new AssertionError("broken game");
+        };
+        List<BoardResult> results = MineSweeperBatch.solveAll(Stream.of(
+                new BoardSpec("failing", testCase[2], new Game(testCase[1]).getMinesN(), failing))).toList();
+        assertEquals(1, results.size());
+        assertNull(results.get(0).solution());
+        assertTrue(results.get(0).failure() instanceof AssertionError);
+    }
+
+    @Test
+    public void batchTakesBoardsOnlyWhileResultsAreConsumed() {
+        String[] testCase = tooFewMines1;
+        AtomicInteger taken = new AtomicInteger();
+        Stream<BoardSpec> endless = Stream.generate(() -> {
+            Game game = new Game(testCase[1]);
+            return new BoardSpec("board " + taken.incrementAndGet(), testCase[2], game.getMinesN(), game);
+        });
+        List<BoardResult> results = new MineSweeperBatch(ForkJoinPool.commonPool(), 3).solve(endless).limit(5).toList();
+        assertEquals(5, results.size());
+        results.forEach(result -> assertEquals(testCase[3].trim(), result.solution()));
+        assertTrue(taken.get() <= 5 + 3);
+    }
+
+    @Test
+    public void parsedBoardCanBeSolvedTwice() {
+        String[] testCase = tooFewMines1;
+        ParsedBoard parsed = BoardParser.parse(testCase[2]);
+        for (int i = 0; i < 2; i++) {
+            Game game = new Game(testCase[1]);
+            assertEquals(testCase[3].trim(), new MineSweeper(parsed, game.getMinesN(), game).solve());
+            assertEquals(testCase[2].trim(), parsed.toString());
+        }
+    }
+
+    @Test
+    public void solvesMemoryMappedFile() throws IOException {
+        String[] testCase = tooFewMines1;
+        Path file = Files.createTempFile("map", ".txt");
+        try {
+            Files.writeString(file, testCase[2]);
+            Game game = new Game(BoardParser.parse(testCase[1]), GameEventSink.SILENT);
+            makeAssertion_AndDisplay(testCase[0], testCase[3], MineSweeper.fromFile(file, game.getMinesN(), game).solve());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void sessionReportsNewlyDeducibleCells() {
+        MineSweeperSession session = new MineSweeperSession("0 ? ?\n? ? ?\n? ? ?", 1);
+        assertEquals(Set.of(new MineSweeperSession.Hint(0, 1, false), new MineSweeperSession.Hint(1, 0, false),
+                new MineSweeperSession.Hint(1, 1, false)), new HashSet<>(session.start()));
+        assertEquals(List.of(), session.reveal(0, 1, 1));
+        assertEquals(Set.of(new MineSweeperSession.Hint(2, 0, false), new MineSweeperSession.Hint(2, 1, false),
+                new MineSweeperSession.Hint(2, 2, false)), new HashSet<>(session.reveal(1, 1, 1)));
+        assertEquals(Set.of(new MineSweeperSession.Hint(1, 2, false), new MineSweeperSession.Hint(0, 2, true)),
+                new HashSet<>(session.reveal(2, 1, 0)));
+    }
+
+    @Test
+    public void sessionHintsMatchFullMaps() {
+        for (String[] testCase : DATA) {
+            ParsedBoard full = BoardParser.parse(testCase[1]);
+            ParsedBoard map = BoardParser.parse(testCase[2]);
+            MineSweeperSession session = new MineSweeperSession(testCase[2], new Game(testCase[1]).getMinesN());
+            boolean[] known = new boolean[map.cells().length];
+            for (int i = 0; i < known.length; i++)
+                known[i] = map.cells()[i] != BoardParser.UNKNOWN;
+            Deque<MineSweeperSession.Hint> hints = new ArrayDeque<>(checkHints(testCase[0], full, session.start()));
+            // follow the hints like a player, open the next free cell from the full map when there are none
+            for (int next = 0; next < known.length; ) {
+                if (hints.isEmpty() && known[next]) {
+                    next++;
+                    continue;
+                }
+                MineSweeperSession.Hint hint = hints.isEmpty()
+                        ? new MineSweeperSession.Hint(next / full.cols(), next % full.cols(), full.cells()[next] == BoardParser.MINE)
+                        : hints.poll();
+                int id = hint.row() * full.cols() + hint.col();
+                if (known[id]) continue;
+                known[id] = true;
+                List<MineSweeperSession.Hint> found = hint.mine()
+                        ? session.flag(hint.row(), hint.col())
+                        : session.reveal(hint.row(), hint.col(), full.get(hint.row(), hint.col()));
+                hints.addAll(checkHints(testCase[0], full, found));
+            }
+        }
+    }
+
+    private static List<MineSweeperSession.Hint> checkHints(String name, ParsedBoard full, List<MineSweeperSession.Hint> hints) {
+        for (MineSweeperSession.Hint hint : hints)
+            assertEquals(name + " " + hint, full.get(hint.row(), hint.col()) == BoardParser.MINE, hint.mine());
+        return hints;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sessionRejectsFlagOnOpenCell() {
+        new MineSweeperSession("0 ? ?\n? ? ?\n? ? ?", 1).flag(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sessionRejectsFlagOnCellDeducedFree() {
+        MineSweeperSession session = new MineSweeperSession("0 ? ?\n? ? ?\n? ? ?", 1);
+        assertTrue(session.start().contains(new MineSweeperSession.Hint(0, 1, false)));
+        session.flag(0, 1);
+    }
+
+    @Test
+    public void metricsCountRuleApplications() {
+        String[] testCase = tooFewMines4;
+        Game game = new Game(testCase[1]);
+        MineSweeper mineSweeper = new MineSweeper(testCase[2], game.getMinesN(), game);
+        SolverMetrics metrics = new SolverMetrics();
+        mineSweeper.setMetrics(metrics);
+        makeAssertion_AndDisplay(testCase[0], testCase[3], mineSweeper.solve());
+        SolverMetrics.Snapshot snapshot = metrics.snapshot();
+        SolverMetrics.RuleSnapshot allFree = snapshot.rules().get(SolverMetrics.Rule.ALL_FREE);
+        assertTrue(allFree.invocations() >= allFree.successes());
+        assertTrue(allFree.successes() > 0);
+        assertTrue(snapshot.rules().get(SolverMetrics.Rule.LINEAR_REDUCTION).invocations() > 0);
+        assertTrue(snapshot.rules().get(SolverMetrics.Rule.COMBINATORICS).invocations() > 0);
+        assertTrue(snapshot.maxFrontierCells() > 0);
+    }
+
+    @Test
+    public void linearReductionFindsCellsTheSubsetRulesMiss() {
+        String map = """
+                1 ? ? ? 1 ?
+                ? 2 ? 3 2 ?
+                ? 1 ? ? ? ?""";
+        for (Cell[] row : cellsOf(map)) {
+            for (Cell cell : row) {
+                if (!cell.isFree() || cell.getUnknownCount() == 0) continue;
+                assertFalse(cell.allUnknownAreFree() || cell.allUnknownAreMines());
+                assertTrue(cell.foundNewMinesFromSubset().isEmpty() && cell.foundNewFreesFromSubset().isEmpty());
+            }
+        }
+        List<Cell> freeCells = new ArrayList<>();
+        Set<Cell> unknownCells = new LinkedHashSet<>();
+        for (Cell[] row : cellsOf(map)) {
+            for (Cell cell : row) {
+                if (cell.isFree() && cell.getUnknownCount() > 0) {
+                    freeCells.add(cell);
+                    unknownCells.addAll(cell.getUnknownsList());
+                }
+            }
+        }
+        List<Cell> sureMines = new ArrayList<>();
+        List<Cell> sureFree = new ArrayList<>();
+        LinearReduction.findSureCells(freeCells, new ArrayList<>(unknownCells), sureMines, sureFree);
+        assertEquals(1, sureMines.size());
+        assertEquals(4, sureFree.size());
+        assertEquals(Set.of("0,3"), positionsOf(sureMines));
+        assertEquals(Set.of("0,5", "1,5", "2,0", "2,5"), positionsOf(sureFree));
+    }
+
+    @Test
+    public void generatedBoardsAreReproducible() {
+        BoardSpec board = BoardGenerator.generate("gen", 9, 9, 0.12, 2, 1);
+        assertEquals(board.map(), BoardGenerator.generate("gen", 9, 9, 0.12, 2, 1).map());
+        assertEquals(10, board.mines());
+        assertEquals("""
+                ? ? ? ? ? ? 1 0 0
+                ? ? ? ? ? ? 1 0 0
+                ? 3 2 1 1 1 1 0 0
+                ? 2 0 0 0 0 0 0 0
+                ? 1 0 0 0 0 0 0 0
+                ? 1 0 0 0 0 0 0 0
+                ? 1 0 0 1 1 2 2 2
+                ? 1 0 0 1 ? ? ? ?
+                ? 1 0 0 1 ? ? ? ?""", board.map());
+        assertEquals("""
+                1 2 3 x 2 1 1 0 0
+                2 x x 2 2 x 1 0 0
+                x 3 2 1 1 1 1 0 0
+                2 2 0 0 0 0 0 0 0
+                x 1 0 0 0 0 0 0 0
+                1 1 0 0 0 0 0 0 0
+                1 1 0 0 1 1 2 2 2
+                x 1 0 0 1 x 2 x x
+                1 1 0 0 1 1 2 2 2""", new MineSweeper(board.map(), board.mines(), board.game()).solve());
+    }
+
+    @Test(expected = java.util.concurrent.CancellationException.class)
+    public void solveStopsWhenInterrupted() {
+        BoardSpec board = BoardGenerator.generate("gen", 9, 9, 0.12, 2, 1);
+        Thread.currentThread().interrupt();
+        try {
+            new MineSweeper(board.map(), board.mines(), board.game()).solve();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void frontierCacheReusesMirroredPatterns() {
+        FrontierCache cache = new FrontierCache(1024);
+        for (String[] testCase : DATA) {
+            Game game = new Game(testCase[1]);
+            MineSweeper original = new MineSweeper(testCase[2], game.getMinesN(), game);
+            original.setFrontierCache(cache);
+            assertEquals(testCase[0], testCase[3].trim(), original.solve());
+            Game mirroredGame = new Game(mirror(testCase[1]));
+            MineSweeper mirrored = new MineSweeper(mirror(testCase[2]), mirroredGame.getMinesN(), mirroredGame);
+            mirrored.setFrontierCache(cache);
+            assertEquals(testCase[0], mirror(testCase[3].trim()), mirrored.solve());
+        }
+        assertTrue(cache.getHits() > 0);
+    }
+
+    @Test
+    public void parallelEnumerationGivesSameSolutions() {
+        for (String[] testCase : DATA) {
+            Game game = new Game(testCase[1]);
+            MineSweeper mineSweeper = new MineSweeper(testCase[2], game.getMinesN(), game);
+            mineSweeper.setParallelMinCells(0);
+            assertEquals(testCase[0], testCase[3].trim(), mineSweeper.solve());
+        }
+    }
+
+    @Test
+    public void unreachableCellsAreFreeWhenFrontierNeedsAllMines() {
+        String map = "? ? 1 0 1 ?\n? ? 2 0 2 ?\n? ? 3 0 2 ?\n? ? 3 0 1 ?\n? ? 3 1 1 ?\n? ? ? ? ? ?";
+        String solution = "1 1 1 0 1 1\n2 x 2 0 2 x\n3 x 3 0 2 x\n4 x 3 0 1 1\nx x 3 1 1 1\n3 x 2 1 x 1";
+        Game game = new Game(solution);
+        makeAssertion_AndDisplay("", solution, new MineSweeper(map, game.getMinesN(), game).solve());
+    }
+
+    @Test
+    public void offHeapSolverAgreesWhereItFinishes() throws IOException {
+        int local = 0;
+        Path file = Files.createTempFile("map", ".txt");
+        Path output = Files.createTempFile("solution", ".txt");
+        try {
+            for (String[] testCase : DATA) {
+                Game game = new Game(testCase[1]);
+                OffHeapBoard board = OffHeapBoard.of(BoardParser.parse(testCase[2]));
+                String solution = new OffHeapMineSweeper(board, game.getMinesN(), game).solve();
+                Files.writeString(file, testCase[2]);
+                Game fileGame = new Game(testCase[1]);
+                boolean solved = OffHeapMineSweeper.fromFile(file, fileGame.getMinesN(), fileGame).solve(output);
+                assertEquals(testCase[0], solution, Files.readString(output));
+                assertEquals(testCase[0], !solution.equals("?"), solved);
+                // the off-heap solver has the local rules only, it may give up where the frontier has to be enumerated
+                Game heapGame = new Game(testCase[1]);
+                MineSweeper mineSweeper = new MineSweeper(testCase[2], heapGame.getMinesN(), heapGame);
+                SolverMetrics metrics = new SolverMetrics();
+                mineSweeper.setMetrics(metrics);
+                mineSweeper.solve();
+                Map<SolverMetrics.Rule, SolverMetrics.RuleSnapshot> rules = metrics.snapshot().rules();
+                boolean needsEnumeration = rules.get(SolverMetrics.Rule.LINEAR_REDUCTION).invocations() > 0
+                        || rules.get(SolverMetrics.Rule.COMBINATORICS).invocations() > 0;
+                if (needsEnumeration && solution.equals("?"))
+                    continue;
+                assertEquals(testCase[0], testCase[3].trim(), solution);
+                if (!needsEnumeration) local++;
+            }
+        } finally {
+            Files.delete(file);
+            Files.delete(output);
+        }
+        assertTrue(local > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void offHeapBoardRejectsTooManyCells() {
+        // 1.6e9 cells fit into an int, their two counters each don't
+        new OffHeapBoard(40_000, 40_000, ByteBuffer.allocateDirect(16));
+    }
+
+    @Test
+    public void enumerationStopsOnceNoCellCanBeSure() {
+        Cell[][] grid = cellsOf("""
+                ? ? ? ? ? ? ? ? ? ?
+                2 3 3 3 3 3 3 3 3 2
+                ? ? ? ? ? ? ? ? ? ?""");
+        List<Cell> freeCells = Arrays.asList(grid[1]);
+        List<Cell> unknownCells = new ArrayList<>(Arrays.asList(grid[0]));
+        unknownCells.addAll(Arrays.asList(grid[2]));
+        MineCountTable all = CombinationTest.countMineLists(freeCells, unknownCells, 0, unknownCells.size(), false);
+        MineCountTable early = CombinationTest.countMineLists(freeCells, unknownCells, 0, unknownCells.size(), true);
+        // one mine above or below every column
+        assertEquals(1024, configurationsOf(all));
+        assertTrue(all.isComplete());
+        assertFalse(early.isComplete());
+        assertTrue(configurationsOf(early) < configurationsOf(all));
+        for (int cell = 0; cell < unknownCells.size(); cell++) {
+            assertFalse(all.isSureMine(cell) || all.isSureFree(cell));
+            assertFalse(early.isSureMine(cell) || early.isSureFree(cell));
+        }
+        FrontierCache cache = new FrontierCache(16);
+        assertFalse(cache.countMineLists(freeCells, unknownCells, 0, unknownCells.size(), true, Integer.MAX_VALUE).isComplete());
+        assertEquals(0, cache.size());
+        assertTrue(cache.countMineLists(freeCells, unknownCells, 0, unknownCells.size(), false, Integer.MAX_VALUE).isComplete());
+        assertEquals(1, cache.size());
+        // a complete table also answers a search that may stop early
+        assertEquals(configurationsOf(all),
+                configurationsOf(cache.countMineLists(freeCells, unknownCells, 0, unknownCells.size(), true, Integer.MAX_VALUE)));
+        assertEquals(1, cache.getHits());
+    }
+
+    private static String mirror(String map) {
+        return Arrays.stream(map.split("\n"))
+                .map(row -> new StringBuilder(row).reverse().toString())
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static Set<String> positionsOf(List<Cell> cells) {
+        return cells.stream().map(cell -> cell.getRow() + "," + cell.getCol()).collect(Collectors.toSet());
+    }
+
+    private static long configurationsOf(MineCountTable table) {
+        long configurations = 0;
+        for (int mines = 0; mines <= table.getCellCount(); mines++)
+            configurations += table.getConfigurations(mines);
+        return configurations;
+    }
+
+    /**
+     * @return the cells of a map with their neighbours set, as in MineSweeper
+     */
+    private static Cell[][] cellsOf(String map) {
+        ParsedBoard board = BoardParser.parse(map);
+        Cell[][] grid = new Cell[board.rows()][board.cols()];
+        for (int i = 0; i < board.rows(); i++) {
+            for (int j = 0; j < board.cols(); j++)
+                grid[i][j] = new Cell(i, j, board.get(i, j), grid);
+        }
+        for (int i = 0; i < board.rows(); i++) {
+            for (int j = 0; j < board.cols(); j++) {
+                for (int k = Math.max(i - 1, 0); k <= Math.min(i + 1, board.rows() - 1); k++) {
+                    for (int l = Math.max(j - 1, 0); l <= Math.min(j + 1, board.cols() - 1); l++) {
+                        if (k == i && l == j) continue;
+                        switch (board.get(k, l)) {
+                            case BoardParser.MINE -> grid[i][j].addMineNeighbour(grid[k][l]);
+                            case BoardParser.UNKNOWN -> grid[i][j].addUnknownNeighbour(grid[k][l]);
+                            default -> grid[i][j].addFreeNeighbour(grid[k][l]);
+                        }
+                    }
+                }
+            }
+        }
+        return grid;
     }
 }